@@ -0,0 +1,59 @@
+package city;
+
+import geometry.Randomizer;
+import geometry.Segment;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Fixed-seed inputs shared by the benchmarks, so every run measures exactly the same geometry
+public class BenchmarkFixtures {
+
+    public static final long SEED = 20221205L;
+
+    public static final String[] COLOURS = {"park", "market", "square", "industrial", "poor", "middle", "rich"};
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Map<String, Double> coloring() {
+        Map<String, Double> coloring = new LinkedHashMap<>();
+        coloring.put("park", 0.1);
+        coloring.put("market", 0.05);
+        coloring.put("square", 0.05);
+        coloring.put("industrial", 0.2);
+        coloring.put("poor", 0.2);
+        coloring.put("middle", 0.2);
+        coloring.put("rich", 0.2);
+        return coloring;
+    }
+
+    public static List<Segment> borders(String shape, double sideLength) {
+        return new City().generateShapedBorders(0, 0, sideLength, Shapes.getMultipliers(shape), new Randomizer(SEED));
+    }
+
+    public static Graph graph(String shape, double sideLength) {
+        return new Graph(borders(shape, sideLength), new Randomizer(SEED));
+    }
+
+    public static List<Quarter> quarters(String shape, double sideLength) {
+        Graph graph = graph(shape, sideLength);
+        graph.fill();
+        return graph.getQuarters();
+    }
+
+    public static City city(String shape, double sideLength) {
+        City city = new City(new Randomizer(SEED), null);
+        city.generateCity(0, 0, sideLength, Shapes.getMultipliers(shape), coloring());
+        return city;
+    }
+
+    // a fresh, unfilled copy of the quarter with the given colour and a fixed seed
+    public static Quarter copy(Quarter quarter, String colour) {
+        Quarter copy = new Quarter(Arrays.asList(quarter.getBorders()), colour);
+        copy.setRandomizer(new Randomizer(SEED));
+        return copy;
+    }
+}
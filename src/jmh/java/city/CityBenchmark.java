@@ -0,0 +1,43 @@
+package city;
+
+import geometry.Randomizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CityBenchmark {
+
+    @Param({"square", "rhombus", "cross"})
+    public String shape;
+
+    @Param({"600", "1500", "3000"})
+    public double sideLength;
+
+    private List<Quarter> quarters;
+    private Map<String, Double> coloring;
+
+    @Setup
+    public void setUp() {
+        quarters = BenchmarkFixtures.quarters(shape, sideLength);
+        coloring = BenchmarkFixtures.coloring();
+    }
+
+    @Benchmark
+    public List<Quarter> colorQuarters() {
+        new City().colorQuarters(quarters, coloring, new Randomizer(BenchmarkFixtures.SEED));
+        return quarters;
+    }
+
+    @Benchmark
+    public City generateCity() {
+        return BenchmarkFixtures.city(shape, sideLength);
+    }
+}
@@ -0,0 +1,35 @@
+package city;
+
+import geometry.Randomizer;
+import geometry.Segment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphBenchmark {
+
+    @Param({"square", "rhombus", "cross"})
+    public String shape;
+
+    @Param({"600", "1500", "3000"})
+    public double sideLength;
+
+    private List<Segment> borders;
+
+    @Setup
+    public void setUp() {
+        borders = BenchmarkFixtures.borders(shape, sideLength);
+    }
+
+    @Benchmark
+    public List<Segment> fill() {
+        return new Graph(borders, new Randomizer(BenchmarkFixtures.SEED)).fill();
+    }
+}
@@ -0,0 +1,37 @@
+package city;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QuarterBenchmark {
+
+    @Param({"park", "market", "square", "industrial", "poor", "middle", "rich"})
+    public String colour;
+
+    @Param({"600", "1500"})
+    public double sideLength;
+
+    private List<Quarter> quarters;
+
+    @Setup
+    public void setUp() {
+        quarters = BenchmarkFixtures.quarters("square", sideLength);
+    }
+
+    // fills every quarter of a fixed city with the same colour
+    @Benchmark
+    public void fill(Blackhole blackhole) {
+        for (Quarter quarter : quarters) {
+            blackhole.consume(BenchmarkFixtures.copy(quarter, colour).fill());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package geometry;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SegmentBenchmark {
+
+    @Param({"64", "1024"})
+    public int segmentCount;
+
+    private List<Segment> segments;
+    private Segment[] queries;
+
+    @Setup
+    public void setUp() {
+        Randomizer randomizer = new Randomizer(20221205L);
+        double area = Math.sqrt(segmentCount) * 90;
+        segments = new ArrayList<>();
+        for (int i = 0; i < segmentCount; i++) {
+            segments.add(randomSegment(randomizer, area));
+        }
+        queries = new Segment[64];
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = randomSegment(randomizer, area);
+        }
+    }
+
+    private static Segment randomSegment(Randomizer randomizer, double area) {
+        double x = randomizer.randomMinMax(0, area);
+        double y = randomizer.randomMinMax(0, area);
+        double angle = randomizer.randomMinMax(0, 2 * Math.PI);
+        double length = randomizer.randomMinMax(48, 90);
+        return new Segment(x, y, x + Math.cos(angle) * length, y + Math.sin(angle) * length);
+    }
+
+    @Benchmark
+    public void getIntersection(Blackhole blackhole) {
+        for (Segment query : queries) {
+            for (Segment segment : segments) {
+                blackhole.consume(query.getIntersection(segment));
+            }
+        }
+    }
+
+    @Benchmark
+    public void intersectsExtended(Blackhole blackhole) {
+        for (Segment query : queries) {
+            blackhole.consume(query.intersectsExtended(segments));
+        }
+    }
+
+    @Benchmark
+    public void gridIntersectsExtended(Blackhole blackhole) {
+        SegmentGrid grid = new SegmentGrid(90, segments);
+        for (Segment query : queries) {
+            blackhole.consume(grid.intersectsExtended(query));
+        }
+    }
+}
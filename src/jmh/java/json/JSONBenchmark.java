@@ -0,0 +1,99 @@
+package json;
+
+import city.BenchmarkFixtures;
+import city.City;
+import city.CityConfig;
+import city.Quarter;
+import com.google.gson.stream.JsonWriter;
+import geometry.Segment;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JSONBenchmark {
+
+    @Param({"600", "1500", "3000"})
+    public double sideLength;
+
+    private City city;
+    private Path directory;
+    private String outputPath;
+    private String quarterFile;
+    private String configFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        city = BenchmarkFixtures.city("square", sideLength);
+        directory = Files.createTempDirectory("quarter_generator_jmh");
+        outputPath = directory.toString() + File.separator;
+
+        List<Quarter> quarters = BenchmarkFixtures.quarters("square", sideLength);
+        Quarter largest = quarters.stream().max(Comparator.comparingInt(q -> q.getBorders().length)).orElseThrow();
+        quarterFile = outputPath + "quarter.json";
+        try (JsonWriter writer = new JsonWriter(new FileWriter(quarterFile))) {
+            writer.beginObject();
+            writer.name("color").value("rich");
+            writer.name("borders").beginArray();
+            for (Segment border : largest.getBorders()) {
+                JSONCodec.writeSegment(writer, border);
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+
+        configFile = outputPath + "city_config.json";
+        try (JsonWriter writer = new JsonWriter(new FileWriter(configFile))) {
+            writer.beginObject();
+            writer.name("start").beginArray().value(0).value(0).endArray();
+            writer.name("shape").value("square");
+            writer.name("sideLength").value(sideLength);
+            writer.name("coloring").beginObject();
+            for (var entry : BenchmarkFixtures.coloring().entrySet()) {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+            writer.endObject();
+            writer.endObject();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void serializeCityPretty() {
+        new JSONSerializer(true).serializeCity(city, outputPath);
+    }
+
+    @Benchmark
+    public void serializeCityCompact() {
+        new JSONSerializer(false).serializeCity(city, outputPath);
+    }
+
+    @Benchmark
+    public Quarter deserializeQuarter() {
+        return new JSONDeserializer().deserializeQuarter(quarterFile);
+    }
+
+    @Benchmark
+    public CityConfig deserializeCityConfig() {
+        return new JSONDeserializer().deserializeCityConfig(configFile);
+    }
+}
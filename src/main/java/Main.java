@@ -1,48 +1,82 @@
-import city.City;
-import city.CityConfig;
-import city.Quarter;
+import app.BatchRunner;
+import app.GenerationServer;
+import app.Generator;
+import app.QuarterPipeline;
+import app.SoakRunner;
+import cache.GenerationCache;
 import json.JSONDeserializer;
-import json.JSONSerializer;
 
 public class Main {
 
-    private static double[][] getMultipliers(String shape) {
-        double[][] squareMultipliers = {{1.0, 0.0}, {0.0, 1.0}, {-1.0, 0.0}, {0.0, -1.0}};
-        double[][] rhombusMultipliers = {{-0.45, -0.9}, {0.45, -0.9}, {0.45, 0.9}, {-0.45, 0.9}};
-        double[][] crossMultipliers = {
-                {0.0, -1.0}, {-1.0, 0.0},
-                {0.0, -1.0}, {1.0, 0},
-                {0.0, -1.0}, {1.0, 0.0},
-                {0.0, 1.0}, {1.0, 0.0},
-                {0.0, 1.0}, {-1.0, 0.0},
-                {0.0, 1.0}, {-1.0, 0.0}};
-
-        return switch (shape) {
-//            case ("square") -> squareMultipliers;
-            case ("rhombus") -> rhombusMultipliers;
-            case ("cross") -> crossMultipliers;
-            default -> squareMultipliers;
-        };
+    private static void generateCity(String inputFilePath, String outputPath, String cachePath) {
+        JSONDeserializer deserializer = new JSONDeserializer();
+        Generator.generateCity(deserializer.deserializeCityConfig(inputFilePath), outputPath, createCache(cachePath));
     }
 
-    private static void generateCity(String inputFilePath, String outputPath) {
+    private static void generateQuarter(String inputFilePath, String outputPath) {
         JSONDeserializer deserializer = new JSONDeserializer();
-        CityConfig config = deserializer.deserializeCityConfig(inputFilePath);
-
-        City city = new City();
-        city.generateCity(config.start.get(0), config.start.get(1), config.sideLength, getMultipliers(config.shape), config.coloring);
+        Generator.generateQuarter(deserializer.deserializeQuarter(inputFilePath), outputPath);
+    }
 
-        JSONSerializer serializer = new JSONSerializer();
-        serializer.serializeCity(city, outputPath);
+    private static void fillQuarters(String inputFilePath, String outputPath, String threads) {
+        int workers = parseCount(threads, Runtime.getRuntime().availableProcessors());
+        if (workers < 0) {
+            System.out.println("INCORRECT ARGUMENTS (threads)");
+            return;
+        }
+        long count = new QuarterPipeline(workers).run(inputFilePath, outputPath);
+        System.out.println("QUARTERS DONE: " + count);
     }
 
-    private static void generateQuarter(String inputFilePath, String outputPath) {
+    private static void editCity(String inputFilePath, String editsPath, String outputPath) {
         JSONDeserializer deserializer = new JSONDeserializer();
-        Quarter quarter = deserializer.deserializeQuarter(inputFilePath);
-        quarter.fill();
+        Generator.editCity(deserializer.deserializeCityConfig(inputFilePath), deserializer.deserializeEdits(editsPath), outputPath);
+    }
 
-        JSONSerializer serializer = new JSONSerializer();
-        serializer.serializeBuildings(quarter.getBuildings(), outputPath);
+    private static void runBatch(String manifestPath, String outputPath, String threads, String cachePath) {
+        int workers = parseCount(threads, Runtime.getRuntime().availableProcessors());
+        if (workers < 0) {
+            System.out.println("INCORRECT ARGUMENTS (threads)");
+            return;
+        }
+        new BatchRunner(workers, createCache(cachePath)).run(manifestPath, outputPath);
+    }
+
+    private static void runSoak(String configPath, String outputPath) {
+        new SoakRunner(configPath).run(outputPath);
+    }
+
+    private static void runServer(String port, String cachePath) {
+        int portNumber = parseCount(port, -1);
+        if (portNumber < 0 || portNumber > 65535) {
+            System.out.println("INCORRECT ARGUMENTS (port)");
+            return;
+        }
+        GenerationServer server = new GenerationServer(portNumber, new GenerationCache(getCacheMemory(), cachePath));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        server.start();
+    }
+
+    // a positive number from the command line, defaultValue when it is not given, or -1 when it is not a positive number
+    private static int parseCount(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int count = Integer.parseInt(value);
+            return count > 0 ? count : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // a quarter of the heap for the memory tier; the disk tier only when a cache directory is given
+    private static GenerationCache createCache(String cachePath) {
+        return cachePath != null ? new GenerationCache(getCacheMemory(), cachePath) : null;
+    }
+
+    private static long getCacheMemory() {
+        return Runtime.getRuntime().maxMemory() / 4;
     }
 
     public static void main(String[] args) {
@@ -52,15 +86,32 @@ public class Main {
 //        args[1] = "quarter.json";
 //        args[2] = "../";
 
+        if (args != null && args.length >= 2 && args[0].equals("server")) {
+            runServer(args[1], args.length > 2 ? args[2] : null);
+            return;
+        }
+
         if (args == null || args.length < 3) {
             System.out.println("INCORRECT ARGUMENTS (amount)");
             return;
         }
 
         if (args[0].equals("city")) {
-            generateCity(args[1], args[2]);
+            generateCity(args[1], args[2], args.length > 3 ? args[3] : null);
         } else if (args[0].equals("quarter")) {
             generateQuarter(args[1], args[2]);
+        } else if (args[0].equals("quarters")) {
+            fillQuarters(args[1], args[2], args.length > 3 ? args[3] : null);
+        } else if (args[0].equals("edit")) {
+            if (args.length < 4) {
+                System.out.println("INCORRECT ARGUMENTS (amount)");
+                return;
+            }
+            editCity(args[1], args[2], args[3]);
+        } else if (args[0].equals("batch")) {
+            runBatch(args[1], args[2], args.length > 3 ? args[3] : null, args.length > 4 ? args[4] : null);
+        } else if (args[0].equals("soak")) {
+            runSoak(args[1], args[2]);
         } else {
             System.out.println("INCORRECT ARGUMENTS (option)");
         }
@@ -0,0 +1,128 @@
+package app;
+
+import cache.GenerationCache;
+import city.CityConfig;
+import com.google.gson.JsonObject;
+import json.JSONDeserializer;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs many generation jobs in one JVM on a fixed pool of workers. The manifest is either a directory of city config
+// and quarter JSON files, or a single city config with a "seeds" range. Every job is written to its own directory
+// under the output path with the usual JSONSerializer layout. The workers are the only parallelism: every job runs on
+// its worker thread, ignoring its "threads", so a batch never uses more than the given number of threads.
+public class BatchRunner {
+
+    private final int workers;
+    private final GenerationCache cache;
+    private final JSONDeserializer deserializer;
+
+    public BatchRunner(int workers) {
+        this(workers, null);
+    }
+
+    public BatchRunner(int workers, GenerationCache cache) {
+        this.workers = Math.max(workers, 1);
+        this.cache = cache;
+        this.deserializer = new JSONDeserializer();
+    }
+
+    private record Job(String name, Runnable task) {
+    }
+
+    public void run(String manifestPath, String outputPath) {
+        List<Job> jobs = readManifest(manifestPath, outputPath);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<?>> results = new ArrayList<>();
+        for (Job job : jobs) {
+            results.add(pool.submit(job.task()));
+        }
+
+        int failed = 0;
+        try {
+            for (int i = 0; i < jobs.size(); i++) {
+                try {
+                    results.get(i).get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    System.out.println("JOB FAILED: " + jobs.get(i).name() + " (" + e.getCause() + ")");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        System.out.println("BATCH DONE: " + (jobs.size() - failed) + " of " + jobs.size() + " jobs");
+    }
+
+    private List<Job> readManifest(String manifestPath, String outputPath) {
+        File manifest = new File(manifestPath);
+        List<Job> jobs = new ArrayList<>();
+
+        if (manifest.isDirectory()) {
+            File[] files = manifest.listFiles((dir, name) -> name.endsWith(".json"));
+            if (files == null) {
+                return jobs;
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName().substring(0, file.getName().length() - ".json".length());
+                String jobPath = getJobPath(outputPath, name);
+                jobs.add(new Job(name, () -> runFile(file.getPath(), jobPath)));
+            }
+            return jobs;
+        }
+
+        CityConfig config = deserializer.deserializeCityConfig(manifestPath);
+        if (config.seeds == null) {
+            jobs.add(createCityJob("city", config, outputPath));
+            return jobs;
+        }
+        // ends on the last seed rather than past it, so a range up to Long.MAX_VALUE does not wrap around
+        for (long seed = config.seeds.get(0); ; seed++) {
+            jobs.add(createCityJob("seed_" + seed, config.withSeed(seed), outputPath));
+            if (seed == config.seeds.get(1)) {
+                return jobs;
+            }
+        }
+    }
+
+    // files are parsed by the worker, so a broken file only fails its own job
+    private void runFile(String fileName, String jobPath) {
+        createDirectory(jobPath);
+        JsonObject json = deserializer.readObject(fileName);
+        if (json.has("borders")) {
+            Generator.generateQuarter(deserializer.deserializeQuarter(json), jobPath);
+        } else {
+            Generator.generateCity(deserializer.deserializeCityConfig(json), jobPath, cache, null);
+        }
+    }
+
+    private Job createCityJob(String name, CityConfig config, String outputPath) {
+        String jobPath = getJobPath(outputPath, name);
+        return new Job(name, () -> {
+            createDirectory(jobPath);
+            Generator.generateCity(config, jobPath, cache, null);
+        });
+    }
+
+    private static String getJobPath(String outputPath, String name) {
+        return new File(outputPath, name).getPath() + File.separator;
+    }
+
+    // by the job itself, so only jobs that run leave a directory behind
+    private static void createDirectory(String jobPath) {
+        new File(jobPath).mkdirs();
+    }
+}
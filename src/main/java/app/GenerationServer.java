@@ -0,0 +1,239 @@
+package app;
+
+import cache.GenerationCache;
+import city.Building;
+import city.City;
+import city.CityConfig;
+import city.Quarter;
+import city.Shapes;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import geometry.Point;
+import geometry.Randomizer;
+import geometry.Segment;
+import json.JSONCodec;
+import json.JSONDeserializer;
+import json.JSONSerializer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+// Serves generation over HTTP on localhost, so interactive tools do not pay a JVM launch per request.
+//   POST /city     body: a city config  -> {"buildings": [[...], ...], "edges": [...], "vertices": [...]}
+//   POST /quarter  body: a quarter      -> [buildings]
+// Responses are streamed: the buildings of a city are sent quarter by quarter while it is generated.
+public class GenerationServer {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final ForkJoinPool fillPool;
+    private final JSONDeserializer deserializer;
+    private final GenerationCache cache;
+
+    public GenerationServer(int port) {
+        this(port, null);
+    }
+
+    public GenerationServer(int port, GenerationCache cache) {
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        requestExecutor = createRequestExecutor();
+        fillPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        deserializer = new JSONDeserializer();
+        this.cache = cache;
+
+        server.setExecutor(requestExecutor);
+        server.createContext("/city", this::handleCity);
+        server.createContext("/quarter", this::handleQuarter);
+    }
+
+    // one virtual thread per request where the runtime has them (JDK 21+), a cached pool otherwise
+    private static ExecutorService createRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("SERVER STARTED ON PORT " + server.getAddress().getPort());
+    }
+
+    public void stop() {
+        server.stop(0);
+        requestExecutor.shutdown();
+        fillPool.shutdown();
+    }
+
+    private void handleCity(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                respondCity(exchange);
+            } catch (RuntimeException e) {
+                sendFailure(exchange, e);
+            }
+        }
+    }
+
+    private void respondCity(HttpExchange exchange) throws IOException {
+        if (!checkMethod(exchange)) return;
+
+        CityConfig config;
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            config = deserializer.deserializeCityConfig(JsonParser.parseReader(reader));
+        } catch (JsonParseException | IllegalStateException e) {
+            sendError(exchange, 400, "INCORRECT CITY CONFIG");
+            return;
+        }
+        if (config == null || config.start == null || config.start.size() != 2 || config.start.contains(null)
+                || config.sideLength == null || config.shape == null || config.coloring == null) {
+            sendError(exchange, 400, "INCORRECT CITY CONFIG");
+            return;
+        }
+        if (config.tiles != null) {
+            sendError(exchange, 400, "TILED CITIES ARE NOT SERVED");
+            return;
+        }
+
+        ForkJoinPool executor = config.threads != null && config.threads > 1 ? fillPool : null;
+        JSONSerializer serializer = new JSONSerializer(config.compact == null || !config.compact);
+
+        City city;
+        JsonWriter writer;
+        if (cache != null && GenerationCache.isCacheable(config)) {
+            city = cache.getCity(config, executor);
+            writer = openCity(exchange, serializer);
+            for (List<Building> quarterBuildings : city.getBuildings()) {
+                JSONCodec.writeBuildings(writer, quarterBuildings);
+            }
+        } else {
+            Randomizer randomizer = config.seed != null ? new Randomizer(config.seed) : new Randomizer();
+            city = new City(randomizer, executor);
+            // the response starts with the first quarter, so a failure in the roads or colours is still a 500
+            JsonWriter[] streamed = new JsonWriter[1];
+            city.generateCity(config.start.get(0), config.start.get(1), config.sideLength, Shapes.getMultipliers(config.shape),
+                    config.coloring, quarterBuildings -> writeQuarter(exchange, serializer, streamed, quarterBuildings));
+            writer = streamed[0] != null ? streamed[0] : openCity(exchange, serializer);
+        }
+        writer.endArray();
+
+        writer.name("edges").beginArray();
+        for (Segment edge : city.getEdges()) {
+            JSONCodec.writeSegment(writer, edge);
+        }
+        writer.endArray();
+
+        writer.name("vertices").beginArray();
+        for (Point vertex : city.getVertices()) {
+            JSONCodec.writePoint(writer, vertex);
+        }
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+    }
+
+    private void handleQuarter(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                respondQuarter(exchange);
+            } catch (RuntimeException e) {
+                sendFailure(exchange, e);
+            }
+        }
+    }
+
+    private void respondQuarter(HttpExchange exchange) throws IOException {
+        if (!checkMethod(exchange)) return;
+
+        Quarter quarter;
+        try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            quarter = deserializer.deserializeQuarter(JsonParser.parseReader(reader));
+        } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+            sendError(exchange, 400, "INCORRECT QUARTER");
+            return;
+        }
+
+        List<Building> buildings = quarter.fill();
+
+        JsonWriter writer = openResponse(exchange, new JSONSerializer(false));
+        JSONCodec.writeBuildings(writer, buildings);
+        writer.close();
+    }
+
+    // a failure before the response started is a 500; after the 200 the response can only be cut short, which the
+    // client sees as a truncated stream when the exchange is closed
+    private static void sendFailure(HttpExchange exchange, RuntimeException e) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            throw e;
+        }
+        sendError(exchange, 500, "GENERATION FAILED");
+    }
+
+    // opens the response into writer[0] on the first quarter
+    private static void writeQuarter(HttpExchange exchange, JSONSerializer serializer, JsonWriter[] writer,
+                                     List<Building> quarterBuildings) {
+        try {
+            if (writer[0] == null) {
+                writer[0] = openCity(exchange, serializer);
+            }
+            JSONCodec.writeBuildings(writer[0], quarterBuildings);
+            writer[0].flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static boolean checkMethod(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            sendError(exchange, 405, "ONLY POST IS SUPPORTED");
+            return false;
+        }
+        return true;
+    }
+
+    private static JsonWriter openCity(HttpExchange exchange, JSONSerializer serializer) throws IOException {
+        JsonWriter writer = openResponse(exchange, serializer);
+        writer.beginObject();
+        writer.name("buildings").beginArray();
+        return writer;
+    }
+
+    // chunked response: the length is not known until generation is finished
+    private static JsonWriter openResponse(HttpExchange exchange, JSONSerializer serializer) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        return serializer.createWriter(new BufferedWriter(
+                new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), BUFFER_SIZE));
+    }
+
+    private static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+        byte[] body = message.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
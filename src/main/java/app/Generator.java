@@ -0,0 +1,180 @@
+package app;
+
+import binary.BinarySerializer;
+import cache.GenerationCache;
+import city.Building;
+import city.City;
+import city.CityConfig;
+import city.CityEdit;
+import city.Quarter;
+import city.Shapes;
+import city.TiledCity;
+import geometry.Randomizer;
+import json.BuildingsStreamWriter;
+import json.JSONSerializer;
+import metrics.GenerationMetrics;
+import tiles.TilePyramid;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+// One generation job: a city (or tiled region) config or a single quarter, written with the JSONSerializer layout
+public class Generator {
+
+    private Generator() {
+    }
+
+    public static void generateCity(CityConfig config, String outputPath) {
+        generateCity(config, outputPath, null);
+    }
+
+    // with a cache, seeded configs are served from it (and stored into it) instead of being generated again
+    public static void generateCity(CityConfig config, String outputPath, GenerationCache cache) {
+        ExecutorService executor = null;
+        if (config.threads != null && config.threads > 1) {
+            executor = new ForkJoinPool(config.threads);
+        }
+        try {
+            generateCity(config, outputPath, cache, executor);
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    // executor null generates on the calling thread whatever config.threads says
+    static void generateCity(CityConfig config, String outputPath, GenerationCache cache, ExecutorService executor) {
+        Randomizer randomizer = config.seed != null ? new Randomizer(config.seed) : new Randomizer();
+        JSONSerializer serializer = createSerializer(config, executor);
+        boolean binary = "binary".equals(config.format);
+
+        if (config.tiles != null) {
+            generateTiledCity(config, randomizer.nextLong(), executor, serializer, binary, outputPath);
+            return;
+        }
+
+        if (config.roadsOnly != null && config.roadsOnly) {
+            City city = new City(randomizer, executor);
+            city.generateLazyCity(config.start.get(0), config.start.get(1), config.sideLength,
+                    Shapes.getMultipliers(config.shape), config.coloring);
+            serializer.serializeGraph(city.getEdges(), city.getVertices(), outputPath);
+            serializer.serializeMetrics(city.getMetrics(), outputPath);
+            return;
+        }
+
+        // metrics.json covers this run: the whole generation on a miss, zeros on a hit, where nothing was generated
+        if (cache != null && GenerationCache.isCacheable(config)) {
+            GenerationMetrics metrics = new GenerationMetrics();
+            City city = cache.getCity(config, executor, metrics);
+            if (binary) {
+                new BinarySerializer().serializeCity(city, outputPath);
+            } else {
+                serializer.serializeCity(city, outputPath);
+            }
+            writeTilePyramid(config, city, executor, serializer, outputPath);
+            serializer.serializeMetrics(metrics, outputPath);
+            return;
+        }
+
+        City city = new City(randomizer, executor);
+        if (binary) {
+            city.generateCity(config.start.get(0), config.start.get(1), config.sideLength,
+                    Shapes.getMultipliers(config.shape), config.coloring);
+            new BinarySerializer().serializeCity(city, outputPath);
+        } else {
+            try (BuildingsStreamWriter buildingsWriter = serializer.openBuildingsStream(outputPath)) {
+                city.generateCity(config.start.get(0), config.start.get(1), config.sideLength,
+                        Shapes.getMultipliers(config.shape), config.coloring, buildingsWriter::write);
+            }
+            serializer.serializeGraph(city.getEdges(), city.getVertices(), outputPath);
+        }
+        writeTilePyramid(config, city, executor, serializer, outputPath);
+        serializer.serializeMetrics(city.getMetrics(), outputPath);
+    }
+
+    // z/x/y map tiles under "tiles/" when the config asks for them
+    private static void writeTilePyramid(CityConfig config, City city, ExecutorService executor,
+                                         JSONSerializer serializer, String outputPath) {
+        if (config.maxZoom == null) {
+            return;
+        }
+        TilePyramid pyramid = new TilePyramid(city, config.maxZoom);
+        pyramid.write(outputPath + "tiles/", executor);
+        serializer.serializeTilePyramid(pyramid, outputPath + "tiles/");
+    }
+
+    // generates the city as usual, then applies the edits one by one, writing what each changed to diff_<n>.json
+    public static void editCity(CityConfig config, List<CityEdit> edits, String outputPath) {
+        ExecutorService executor = null;
+        if (config.threads != null && config.threads > 1) {
+            executor = new ForkJoinPool(config.threads);
+        }
+
+        Randomizer randomizer = config.seed != null ? new Randomizer(config.seed) : new Randomizer();
+        JSONSerializer serializer = createSerializer(config, executor);
+
+        City city = new City(randomizer, executor);
+        try {
+            city.generateCity(config.start.get(0), config.start.get(1), config.sideLength,
+                    Shapes.getMultipliers(config.shape), config.coloring);
+            serializer.serializeCity(city, outputPath);
+            for (int i = 0; i < edits.size(); i++) {
+                serializer.serializeDiff(edits.get(i).applyTo(city), outputPath + "diff_" + i + ".json");
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        serializer.serializeMetrics(city.getMetrics(), outputPath);
+    }
+
+    // every tile is written with the usual layout under the prefix "tile_<column>_<row>_"
+    private static void generateTiledCity(CityConfig config, long seed, ExecutorService executor,
+                                          JSONSerializer serializer, boolean binary, String outputPath) {
+        TiledCity tiledCity = new TiledCity(config.start.get(0), config.start.get(1), config.sideLength,
+                config.tiles.get(0), config.tiles.get(1), seed);
+
+        tiledCity.generate(config.coloring, executor, new TiledCity.TileOutput() {
+            private BuildingsStreamWriter buildingsWriter;
+
+            @Override
+            public Consumer<List<Building>> beginTile(int column, int row) {
+                if (binary) {
+                    return null;
+                }
+                buildingsWriter = serializer.openBuildingsStream(getTilePath(outputPath, column, row));
+                return buildingsWriter::write;
+            }
+
+            @Override
+            public void endTile(int column, int row, City city) {
+                if (binary) {
+                    new BinarySerializer().serializeCity(city, getTilePath(outputPath, column, row));
+                    return;
+                }
+                buildingsWriter.close();
+                serializer.serializeGraph(city.getEdges(), city.getVertices(), getTilePath(outputPath, column, row));
+            }
+        });
+        serializer.serializeMetrics(tiledCity.getMetrics(), outputPath);
+    }
+
+    private static JSONSerializer createSerializer(CityConfig config, ExecutorService executor) {
+        return new JSONSerializer(config.compact == null || !config.compact, config.compress != null && config.compress, executor);
+    }
+
+    private static String getTilePath(String outputPath, int column, int row) {
+        return outputPath + "tile_" + column + "_" + row + "_";
+    }
+
+    public static void generateQuarter(Quarter quarter, String outputPath) {
+        quarter.fill();
+
+        JSONSerializer serializer = new JSONSerializer();
+        serializer.serializeBuildings(quarter.getBuildings(), outputPath);
+    }
+}
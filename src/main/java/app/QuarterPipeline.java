@@ -0,0 +1,87 @@
+package app;
+
+import city.Building;
+import city.Quarter;
+import json.BuildingsLineWriter;
+import json.JSONDeserializer;
+import json.JSONSerializer;
+import json.QuarterStreamReader;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Fills a newline-delimited JSON file of quarters in three stages: a reader thread parses one quarter at a time and
+// hands it to a pool of fill workers, and the calling thread writes the results in input order. Pending fills wait
+// in a bounded queue; when it is full the reader stops, so memory depends on the queue size, not on the input size.
+public class QuarterPipeline {
+
+    // marks the end of the input in the queue
+    private static final Future<List<Building>> END = CompletableFuture.completedFuture(null);
+
+    private final int workers;
+    private final int queueSize;
+
+    public QuarterPipeline(int workers) {
+        this(workers, workers * 4);
+    }
+
+    public QuarterPipeline(int workers, int queueSize) {
+        this.workers = Math.max(workers, 1);
+        this.queueSize = Math.max(queueSize, 1);
+    }
+
+    // writes buildings.ndjson under outputPath, line i holding the buildings of input quarter i; returns the count
+    public long run(String inputPath, String outputPath) {
+        BlockingQueue<Future<List<Building>>> pending = new ArrayBlockingQueue<>(queueSize);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        Thread reader = new Thread(() -> read(inputPath, pool, pending), "quarter-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        long written = 0;
+        try (BuildingsLineWriter writer = new JSONSerializer(false).openBuildingsLines(outputPath)) {
+            while (true) {
+                Future<List<Building>> fill = pending.take();
+                if (fill == END) {
+                    break;
+                }
+                writer.write(fill.get());
+                written++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Quarter " + (written + 1) + " failed", e.getCause());
+        } finally {
+            reader.interrupt();
+            pool.shutdownNow();
+        }
+        return written;
+    }
+
+    private static void read(String inputPath, ExecutorService pool, BlockingQueue<Future<List<Building>>> pending) {
+        try {
+            try (QuarterStreamReader quarters = new JSONDeserializer().openQuarterStream(inputPath)) {
+                Quarter quarter;
+                while ((quarter = quarters.next()) != null) {
+                    pending.put(pool.submit(quarter::fill));
+                }
+            } catch (RuntimeException e) {
+                // the writer reaches the failure in input order, after everything read before it
+                pending.put(CompletableFuture.failedFuture(e));
+                return;
+            }
+            pending.put(END);
+        } catch (InterruptedException e) {
+            // the writer has stopped
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package app;
+
+import com.google.gson.stream.JsonWriter;
+import json.JSONSerializer;
+import metrics.LogLinearHistogram;
+import metrics.SoakReport;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Writes what SoakRunner measured; the generator's own output layout stays in JSONSerializer
+class SoakReportWriter {
+
+    private SoakReportWriter() {
+    }
+
+    // soak_report.json: throughput and latency per job, allocation, GC and heap figures; sizes in bytes, times in ms
+    static void write(SoakReport report, String path) {
+        try (JsonWriter writer = new JSONSerializer().createWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(path + "soak_report.json"), StandardCharsets.UTF_8)))) {
+            writer.beginObject();
+            writer.name("seconds").value(report.seconds());
+            writer.name("workers").value(report.workers());
+            writer.name("failed").value(report.failed());
+
+            long total = 0;
+            writer.name("jobs").beginObject();
+            for (Map.Entry<String, LogLinearHistogram> entry : report.latencies().entrySet()) {
+                LogLinearHistogram histogram = entry.getValue();
+                total += histogram.getCount();
+                writer.name(entry.getKey()).beginObject();
+                writer.name("count").value(histogram.getCount());
+                writer.name("perSecond").value(histogram.getCount() / report.seconds());
+                writer.name("meanMs").value(toMillis(histogram.getTotalNanos() / Math.max(histogram.getCount(), 1)));
+                writer.name("p50Ms").value(toMillis(histogram.getPercentileNanos(0.5)));
+                writer.name("p99Ms").value(toMillis(histogram.getPercentileNanos(0.99)));
+                writer.name("p999Ms").value(toMillis(histogram.getPercentileNanos(0.999)));
+                writer.name("maxMs").value(toMillis(histogram.getMaxNanos()));
+                writer.endObject();
+            }
+            writer.endObject();
+            writer.name("perSecond").value(total / report.seconds());
+
+            writer.name("allocatedBytes").value(report.allocatedBytes());
+            writer.name("allocatedBytesPerSecond").value(report.allocatedBytes() < 0 ? -1 : report.allocatedBytes() / report.seconds());
+
+            writer.name("gc").beginObject();
+            for (SoakReport.Collector collector : report.collectors()) {
+                writer.name(collector.name()).beginObject();
+                writer.name("count").value(collector.count());
+                writer.name("totalMs").value(collector.timeMillis());
+                writer.endObject();
+            }
+            writer.endObject();
+
+            writer.name("heap").beginObject();
+            writer.name("maxBytes").value(report.heapMaxBytes());
+            writer.name("peakBytes").beginObject();
+            for (Map.Entry<String, Long> entry : report.heapPeakBytes().entrySet()) {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+            writer.endObject();
+            writer.name("samples").beginArray();
+            for (SoakReport.Sample sample : report.samples()) {
+                writer.beginObject();
+                writer.name("seconds").value(sample.seconds());
+                writer.name("completed").value(sample.completed());
+                writer.name("usedBytes").value(sample.heapUsedBytes());
+                writer.name("afterGcBytes").value(sample.heapAfterGcBytes());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+}
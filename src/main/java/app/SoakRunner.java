@@ -0,0 +1,203 @@
+package app;
+
+import city.City;
+import city.Quarter;
+import city.Shapes;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import geometry.Randomizer;
+import geometry.Segment;
+import json.JSONDeserializer;
+import metrics.JvmMonitor;
+import metrics.LogLinearHistogram;
+import metrics.SoakReport;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// Sustained load for sizing workers and catching slow leaks: a number of worker threads run city generations and
+// quarter fills back to back, picked at random by weight from a mix, until the duration is over. Nothing is measured
+// during the warmup. The report (soak_report.json) has throughput and latency percentiles per job, the allocation
+// rate, GC counts and times, heap pool peaks, and heap samples taken every sampleSeconds.
+//
+// {"durationSeconds": 3600, "warmupSeconds": 60, "sampleSeconds": 30, "workers": 4, "seed": 1,
+//  "coloring": {...},
+//  "mix": [{"kind": "city", "shape": "square", "sideLength": 2000, "weight": 1},
+//          {"kind": "quarter", "weight": 50}]}
+//
+// Quarter fills take the outlines and colours of the quarters of one city generated at the start.
+public class SoakRunner {
+
+    private static final double QUARTER_SOURCE_SIDE_LENGTH = 3000;
+
+    private final double durationSeconds;
+    private final double warmupSeconds;
+    private final double sampleSeconds;
+    private final int workers;
+    private final long seed;
+    private final Map<String, Double> coloring;
+    private final List<Job> mix;
+    private final double totalWeight;
+
+    private final Map<String, LogLinearHistogram> latencies = new LinkedHashMap<>();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private volatile boolean allocationCounted = true;
+
+    // outlines and colours for quarter fills
+    private final List<List<Segment>> quarterBorders = new ArrayList<>();
+    private final List<String> quarterColours = new ArrayList<>();
+
+    private record Job(String name, String kind, String shape, double sideLength, double weight) {
+    }
+
+    public SoakRunner(String configPath) {
+        JsonObject config = new JSONDeserializer().readObject(configPath);
+        durationSeconds = config.get("durationSeconds").getAsDouble();
+        warmupSeconds = config.has("warmupSeconds") ? config.get("warmupSeconds").getAsDouble() : 0;
+        sampleSeconds = config.has("sampleSeconds") ? config.get("sampleSeconds").getAsDouble() : 10;
+        workers = config.has("workers") ? Math.max(config.get("workers").getAsInt(), 1) : Runtime.getRuntime().availableProcessors();
+        seed = config.has("seed") ? config.get("seed").getAsLong() : 0;
+        coloring = new Gson().fromJson(config.get("coloring"), new TypeToken<LinkedHashMap<String, Double>>() {}.getType());
+
+        mix = new ArrayList<>();
+        double weights = 0;
+        for (JsonElement jsonJob : config.getAsJsonArray("mix")) {
+            JsonObject job = jsonJob.getAsJsonObject();
+            String kind = job.get("kind").getAsString();
+            double weight = job.has("weight") ? job.get("weight").getAsDouble() : 1;
+            if (kind.equals("city")) {
+                String shape = job.has("shape") ? job.get("shape").getAsString() : Shapes.NAMES[0];
+                double sideLength = job.get("sideLength").getAsDouble();
+                mix.add(new Job("city_" + shape + "_" + (long) sideLength, kind, shape, sideLength, weight));
+            } else if (kind.equals("quarter")) {
+                mix.add(new Job("quarter", kind, null, 0, weight));
+            } else {
+                throw new IllegalArgumentException("Unknown job kind: " + kind);
+            }
+            weights += weight;
+        }
+        totalWeight = weights;
+        for (Job job : mix) {
+            latencies.putIfAbsent(job.name(), new LogLinearHistogram());
+        }
+    }
+
+    public void run(String outputPath) {
+        Randomizer randomizer = new Randomizer(seed);
+        City quarterSource = new City(randomizer.split(), null);
+        quarterSource.generateLazyCity(0, 0, QUARTER_SOURCE_SIDE_LENGTH, Shapes.getMultipliers(Shapes.NAMES[0]), coloring);
+        for (int i = 0; i < quarterSource.getQuarterCount(); i++) {
+            quarterBorders.add(quarterSource.getRoadNetwork().quarterBorders().get(i));
+            quarterColours.add(quarterSource.getQuarterColour(i));
+        }
+
+        long startNanos = System.nanoTime();
+        long measureNanos = startNanos + (long) (warmupSeconds * 1e9);
+        long endNanos = measureNanos + (long) (durationSeconds * 1e9);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Randomizer workerRandomizer = randomizer.split();
+            Thread thread = new Thread(() -> work(workerRandomizer, measureNanos, endNanos), "soak-worker-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+
+        JvmMonitor monitor = new JvmMonitor();
+        List<SoakReport.Sample> samples = new ArrayList<>();
+        try {
+            sleepUntil(measureNanos);
+            monitor.start();
+            long measuredBefore = completed.sum();
+            long nextSample = measureNanos;
+            while (nextSample < endNanos) {
+                sleepUntil(nextSample);
+                samples.add(monitor.sample((System.nanoTime() - measureNanos) / 1e9, completed.sum() - measuredBefore));
+                nextSample += (long) (sampleSeconds * 1e9);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            samples.add(monitor.sample((System.nanoTime() - measureNanos) / 1e9, completed.sum() - measuredBefore));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+
+        SoakReport report = new SoakReport((System.nanoTime() - measureNanos) / 1e9, workers, failed.sum(), latencies,
+                allocationCounted ? allocatedBytes.sum() : -1, monitor.getCollectors(), monitor.getHeapPeaks(),
+                monitor.getHeapMax(), samples);
+        SoakReportWriter.write(report, outputPath);
+        System.out.println("SOAK DONE: " + completed.sum() + " jobs, " + failed.sum() + " failed");
+    }
+
+    private void work(Randomizer randomizer, long measureNanos, long endNanos) {
+        long allocatedAtStart = -1;
+        while (true) {
+            long start = System.nanoTime();
+            if (start >= endNanos) {
+                break;
+            }
+            if (allocatedAtStart < 0 && start >= measureNanos) {
+                allocatedAtStart = JvmMonitor.getAllocatedBytes();
+                if (allocatedAtStart < 0) {
+                    allocationCounted = false;
+                    allocatedAtStart = 0;
+                }
+            }
+
+            Job job = pick(randomizer);
+            try {
+                runJob(job, randomizer.split());
+            } catch (RuntimeException e) {
+                failed.increment();
+                continue;
+            }
+            if (start >= measureNanos) {
+                latencies.get(job.name()).record(System.nanoTime() - start);
+            }
+            completed.increment();
+        }
+        if (allocationCounted && allocatedAtStart >= 0) {
+            allocatedBytes.add(JvmMonitor.getAllocatedBytes() - allocatedAtStart);
+        }
+    }
+
+    private Job pick(Randomizer randomizer) {
+        double value = randomizer.nextDouble() * totalWeight;
+        for (Job job : mix) {
+            value -= job.weight();
+            if (value < 0) {
+                return job;
+            }
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private void runJob(Job job, Randomizer randomizer) {
+        if (job.kind().equals("city")) {
+            City city = new City(randomizer, null);
+            city.generateCity(0, 0, job.sideLength(), Shapes.getMultipliers(job.shape()), coloring);
+            return;
+        }
+        int index = randomizer.nextInt(quarterBorders.size());
+        Quarter quarter = new Quarter(quarterBorders.get(index), quarterColours.get(index));
+        quarter.setRandomizer(randomizer);
+        quarter.fill();
+    }
+
+    private static void sleepUntil(long nanos) throws InterruptedException {
+        long left = nanos - System.nanoTime();
+        if (left > 0) {
+            Thread.sleep(left / 1_000_000, (int) (left % 1_000_000));
+        }
+    }
+}
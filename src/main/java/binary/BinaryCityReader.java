@@ -0,0 +1,159 @@
+package binary;
+
+import city.Building;
+import geometry.Point;
+import geometry.Segment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Memory-maps a city.bin file and reads single buildings, quarters or edges on demand without deserializing
+// the rest of the file. Only absolute reads are used, so one reader can be shared between threads.
+public class BinaryCityReader implements Closeable {
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    private final int vertexCount;
+    private final int edgeCount;
+    private final int quarterCount;
+    private final int buildingCount;
+    private final String[] colours;
+
+    private final int verticesOffset;
+    private final int edgesOffset;
+    private final int quartersOffset;
+    private final int buildingsOffset;
+    private final int pointsOffset;
+
+    public BinaryCityReader(String fileName) {
+        try {
+            channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ);
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to be mapped at once: " + fileName);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        if (buffer.getInt(0) != BinaryFormat.MAGIC || buffer.getInt(4) != BinaryFormat.VERSION) {
+            throw new IllegalArgumentException("Not a city binary file: " + fileName);
+        }
+        vertexCount = buffer.getInt(8);
+        edgeCount = buffer.getInt(12);
+        quarterCount = buffer.getInt(16);
+        buildingCount = buffer.getInt(20);
+        int colourCount = buffer.getInt(28);
+        int coloursOffset = (int) buffer.getLong(32);
+        verticesOffset = (int) buffer.getLong(40);
+        edgesOffset = (int) buffer.getLong(48);
+        quartersOffset = (int) buffer.getLong(56);
+        buildingsOffset = (int) buffer.getLong(64);
+        pointsOffset = (int) buffer.getLong(72);
+
+        colours = new String[colourCount];
+        int offset = coloursOffset;
+        for (int i = 0; i < colourCount; i++) {
+            byte[] name = new byte[buffer.getShort(offset)];
+            buffer.get(offset + Short.BYTES, name);
+            colours[i] = new String(name, StandardCharsets.UTF_8);
+            offset += Short.BYTES + name.length;
+        }
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public double getVertexX(int vertex) {
+        return buffer.getDouble(verticesOffset + vertex * BinaryFormat.VERTEX_SIZE);
+    }
+
+    public double getVertexY(int vertex) {
+        return buffer.getDouble(verticesOffset + vertex * BinaryFormat.VERTEX_SIZE + Double.BYTES);
+    }
+
+    public Point getVertex(int vertex) {
+        return new Point(getVertexX(vertex), getVertexY(vertex));
+    }
+
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    public Segment getEdge(int edge) {
+        int offset = edgesOffset + edge * BinaryFormat.EDGE_SIZE;
+        int start = buffer.getInt(offset);
+        int end = buffer.getInt(offset + Integer.BYTES);
+        return new Segment(getVertexX(start), getVertexY(start), getVertexX(end), getVertexY(end));
+    }
+
+    public List<Segment> getEdges() {
+        List<Segment> edges = new ArrayList<>(edgeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            edges.add(getEdge(i));
+        }
+        return edges;
+    }
+
+    public int getQuarterCount() {
+        return quarterCount;
+    }
+
+    public int getFirstBuilding(int quarter) {
+        return buffer.getInt(quartersOffset + quarter * Integer.BYTES);
+    }
+
+    public int getQuarterBuildingCount(int quarter) {
+        return getFirstBuilding(quarter + 1) - getFirstBuilding(quarter);
+    }
+
+    public List<Building> getQuarterBuildings(int quarter) {
+        int first = getFirstBuilding(quarter);
+        int last = getFirstBuilding(quarter + 1);
+        List<Building> buildings = new ArrayList<>(last - first);
+        for (int i = first; i < last; i++) {
+            buildings.add(getBuilding(i));
+        }
+        return buildings;
+    }
+
+    public int getBuildingCount() {
+        return buildingCount;
+    }
+
+    public String getBuildingColour(int building) {
+        return colours[buffer.getInt(buildingsOffset + building * BinaryFormat.BUILDING_SIZE + 2 * Integer.BYTES)];
+    }
+
+    public Building getBuilding(int building) {
+        int offset = buildingsOffset + building * BinaryFormat.BUILDING_SIZE;
+        int firstPoint = buffer.getInt(offset);
+        int pointCount = buffer.getInt(offset + Integer.BYTES);
+        String colour = colours[buffer.getInt(offset + 2 * Integer.BYTES)];
+
+        List<Point> vertexes = new ArrayList<>(pointCount);
+        for (int i = 0; i < pointCount; i++) {
+            int pointOffset = pointsOffset + (firstPoint + i) * BinaryFormat.POINT_SIZE;
+            vertexes.add(new Point(buffer.getDouble(pointOffset), buffer.getDouble(pointOffset + Double.BYTES)));
+        }
+        return new Building(colour, vertexes);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
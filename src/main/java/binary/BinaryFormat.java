@@ -0,0 +1,28 @@
+package binary;
+
+// Layout of city.bin (big-endian):
+//
+// header      magic, version, vertexCount, edgeCount, quarterCount, buildingCount, pointCount, colourCount (ints)
+//             followed by the offsets of the tables below (longs)
+// colours     colourCount x (short byte length, UTF-8 bytes)
+// vertices    vertexCount x (double x, double y), every distinct road vertex once
+// edges       edgeCount x (int start vertex, int end vertex)
+// quarters    (quarterCount + 1) x int: index of the first building of every quarter, then buildingCount
+// buildings   buildingCount x (int first point, int point count, int colour)
+// points      pointCount x (double x, double y), the building polygons one after another
+final class BinaryFormat {
+
+    static final int MAGIC = 0x51474342; // "QGCB"
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 8 * Integer.BYTES + 6 * Long.BYTES;
+    static final int VERTEX_SIZE = 2 * Double.BYTES;
+    static final int EDGE_SIZE = 2 * Integer.BYTES;
+    static final int BUILDING_SIZE = 3 * Integer.BYTES;
+    static final int POINT_SIZE = 2 * Double.BYTES;
+
+    static final String FILE_NAME = "city.bin";
+
+    private BinaryFormat() {
+    }
+}
@@ -0,0 +1,124 @@
+package binary;
+
+import city.Building;
+import city.City;
+import geometry.Point;
+import geometry.Segment;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes a city in the compact binary layout described in BinaryFormat, next to the JSON output
+public class BinarySerializer {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private record VertexKey(double x, double y) {
+    }
+
+    public void serializeCity(City city, String path) {
+        serialize(city.getBuildings(), city.getEdges(), path + BinaryFormat.FILE_NAME);
+    }
+
+    public void serialize(List<List<Building>> buildings, List<Segment> edges, String fileName) {
+        Map<VertexKey, Integer> vertices = new LinkedHashMap<>();
+        int[] edgeVertices = new int[edges.size() * 2];
+        for (int i = 0; i < edges.size(); i++) {
+            Segment edge = edges.get(i);
+            edgeVertices[2 * i] = vertices.computeIfAbsent(new VertexKey(edge.getX1(), edge.getY1()), k -> vertices.size());
+            edgeVertices[2 * i + 1] = vertices.computeIfAbsent(new VertexKey(edge.getX2(), edge.getY2()), k -> vertices.size());
+        }
+
+        Map<String, Integer> colours = new HashMap<>();
+        List<byte[]> colourNames = new ArrayList<>();
+        int buildingCount = 0;
+        int pointCount = 0;
+        for (List<Building> quarterBuildings : buildings) {
+            for (Building building : quarterBuildings) {
+                if (!colours.containsKey(building.color())) {
+                    colours.put(building.color(), colours.size());
+                    colourNames.add(building.color().getBytes(StandardCharsets.UTF_8));
+                }
+                buildingCount++;
+                pointCount += building.vertexes().size();
+            }
+        }
+
+        long coloursOffset = BinaryFormat.HEADER_SIZE;
+        long verticesOffset = coloursOffset;
+        for (byte[] name : colourNames) {
+            verticesOffset += Short.BYTES + name.length;
+        }
+        long edgesOffset = verticesOffset + (long) vertices.size() * BinaryFormat.VERTEX_SIZE;
+        long quartersOffset = edgesOffset + (long) edges.size() * BinaryFormat.EDGE_SIZE;
+        long buildingsOffset = quartersOffset + (long) (buildings.size() + 1) * Integer.BYTES;
+        long pointsOffset = buildingsOffset + (long) buildingCount * BinaryFormat.BUILDING_SIZE;
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), BUFFER_SIZE))) {
+            out.writeInt(BinaryFormat.MAGIC);
+            out.writeInt(BinaryFormat.VERSION);
+            out.writeInt(vertices.size());
+            out.writeInt(edges.size());
+            out.writeInt(buildings.size());
+            out.writeInt(buildingCount);
+            out.writeInt(pointCount);
+            out.writeInt(colourNames.size());
+            out.writeLong(coloursOffset);
+            out.writeLong(verticesOffset);
+            out.writeLong(edgesOffset);
+            out.writeLong(quartersOffset);
+            out.writeLong(buildingsOffset);
+            out.writeLong(pointsOffset);
+
+            for (byte[] name : colourNames) {
+                out.writeShort(name.length);
+                out.write(name);
+            }
+
+            for (VertexKey vertex : vertices.keySet()) {
+                out.writeDouble(vertex.x());
+                out.writeDouble(vertex.y());
+            }
+
+            for (int vertex : edgeVertices) {
+                out.writeInt(vertex);
+            }
+
+            int firstBuilding = 0;
+            for (List<Building> quarterBuildings : buildings) {
+                out.writeInt(firstBuilding);
+                firstBuilding += quarterBuildings.size();
+            }
+            out.writeInt(firstBuilding);
+
+            int firstPoint = 0;
+            for (List<Building> quarterBuildings : buildings) {
+                for (Building building : quarterBuildings) {
+                    out.writeInt(firstPoint);
+                    out.writeInt(building.vertexes().size());
+                    out.writeInt(colours.get(building.color()));
+                    firstPoint += building.vertexes().size();
+                }
+            }
+
+            for (List<Building> quarterBuildings : buildings) {
+                for (Building building : quarterBuildings) {
+                    for (Point point : building.vertexes()) {
+                        out.writeDouble(point.x);
+                        out.writeDouble(point.y);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
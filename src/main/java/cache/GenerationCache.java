@@ -0,0 +1,251 @@
+package cache;
+
+import binary.BinaryCityReader;
+import binary.BinarySerializer;
+import city.Building;
+import city.City;
+import city.CityConfig;
+import city.RoadNetwork;
+import city.Shapes;
+import geometry.Randomizer;
+import geometry.Segment;
+import json.JSONDeserializer;
+import json.JSONSerializer;
+import metrics.GenerationMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+// Caches generated cities by a canonical hash of their config and seed. Road networks are cached on their own,
+// keyed without the colouring, so a recoloured city only repeats colouring and filling.
+// Memory tier: LRU bounded by an estimate of the retained bytes. Disk tier (optional): city.bin files and
+// road network JSON files under the cache directory.
+// Configs without a seed are random by definition and are never cached.
+public class GenerationCache {
+
+    // part of every key: raise it whenever the same config and seed generate something different
+    private static final String VERSION = "3";
+
+    private final long maxMemoryBytes;
+    private final File directory;
+    private final LinkedHashMap<String, Entry> memory;
+    private long memoryBytes;
+
+    private record Entry(Object value, long size) {
+    }
+
+    public GenerationCache(long maxMemoryBytes, String directory) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory != null ? new File(directory) : null;
+        this.memory = new LinkedHashMap<>(16, 0.75f, true);
+        if (this.directory != null) {
+            this.directory.mkdirs();
+        }
+    }
+
+    public static boolean isCacheable(CityConfig config) {
+        return config.seed != null && config.tiles == null;
+    }
+
+    public City getCity(CityConfig config, ExecutorService executor) {
+        return getCity(config, executor, null);
+    }
+
+    // metrics (if not null) receives the figures of the generation a miss runs; a hit records nothing in it
+    public City getCity(CityConfig config, ExecutorService executor, GenerationMetrics metrics) {
+        if (!isCacheable(config)) {
+            return generate(config, null, executor, metrics);
+        }
+
+        String roadsKey = getRoadsKey(config);
+        String cityKey = getCityKey(config, roadsKey);
+
+        City city = (City) getFromMemory(cityKey);
+        if (city != null) {
+            return city;
+        }
+        city = readCity(cityKey);
+        if (city != null) {
+            putToMemory(cityKey, city, estimateSize(city));
+            return city;
+        }
+
+        RoadNetwork roads = (RoadNetwork) getFromMemory(roadsKey);
+        if (roads == null) {
+            roads = readRoads(roadsKey);
+            if (roads != null) {
+                putToMemory(roadsKey, roads, estimateSize(roads));
+            }
+        }
+
+        city = generate(config, roads, executor, metrics);
+        if (roads == null) {
+            roads = city.getRoadNetwork();
+            putToMemory(roadsKey, roads, estimateSize(roads));
+            writeRoads(roadsKey, roads);
+        }
+        putToMemory(cityKey, city, estimateSize(city));
+        writeCity(cityKey, city);
+        return city;
+    }
+
+    private static City generate(CityConfig config, RoadNetwork roads, ExecutorService executor, GenerationMetrics metrics) {
+        Randomizer randomizer = config.seed != null ? new Randomizer(config.seed) : new Randomizer();
+        City city = new City(randomizer, executor);
+        if (metrics != null) {
+            city.setMetrics(metrics);
+        }
+        if (roads != null) {
+            city.generateCity(roads, config.coloring, null);
+        } else {
+            city.generateCity(config.start.get(0), config.start.get(1), config.sideLength,
+                    Shapes.getMultipliers(config.shape), config.coloring);
+        }
+        return city;
+    }
+
+    private synchronized Object getFromMemory(String key) {
+        Entry entry = memory.get(key);
+        return entry != null ? entry.value() : null;
+    }
+
+    private synchronized void putToMemory(String key, Object value, long size) {
+        if (size > maxMemoryBytes) {
+            return;
+        }
+        Entry previous = memory.put(key, new Entry(value, size));
+        if (previous != null) {
+            memoryBytes -= previous.size();
+        }
+        memoryBytes += size;
+
+        Iterator<Entry> eldest = memory.values().iterator();
+        while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+            memoryBytes -= eldest.next().size();
+            eldest.remove();
+        }
+    }
+
+    private City readCity(String key) {
+        if (directory == null) {
+            return null;
+        }
+        File file = new File(directory, key + ".bin");
+        if (!file.isFile()) {
+            return null;
+        }
+        try (BinaryCityReader reader = new BinaryCityReader(file.getPath())) {
+            List<List<Building>> buildings = new ArrayList<>(reader.getQuarterCount());
+            for (int i = 0; i < reader.getQuarterCount(); i++) {
+                buildings.add(reader.getQuarterBuildings(i));
+            }
+            return new City(buildings, reader.getEdges());
+        }
+    }
+
+    private void writeCity(String key, City city) {
+        if (directory == null) {
+            return;
+        }
+        File file = new File(directory, key + ".bin");
+        File temporary = new File(directory, key + ".bin." + Thread.currentThread().getId() + ".tmp");
+        new BinarySerializer().serialize(city.getBuildings(), city.getEdges(), temporary.getPath());
+        moveIntoPlace(temporary, file);
+    }
+
+    private RoadNetwork readRoads(String key) {
+        if (directory == null) {
+            return null;
+        }
+        File file = new File(directory, key + ".roads.json");
+        if (!file.isFile()) {
+            return null;
+        }
+        return new JSONDeserializer().deserializeRoadNetwork(file.getPath());
+    }
+
+    private void writeRoads(String key, RoadNetwork roads) {
+        if (directory == null) {
+            return;
+        }
+        File file = new File(directory, key + ".roads.json");
+        File temporary = new File(directory, key + ".roads.json." + Thread.currentThread().getId() + ".tmp");
+        new JSONSerializer(false).serializeRoadNetwork(roads, temporary.getPath());
+        moveIntoPlace(temporary, file);
+    }
+
+    // readers never see a partly written file
+    private static void moveIntoPlace(File temporary, File file) {
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String getRoadsKey(CityConfig config) {
+        String canonical = "roads|" + VERSION +
+                "|start=" + config.start.get(0) + "," + config.start.get(1) +
+                "|sideLength=" + config.sideLength +
+                "|shape=" + (config.shape != null ? config.shape : "square") +
+                "|seed=" + config.seed;
+        return hash(canonical);
+    }
+
+    private static String getCityKey(CityConfig config, String roadsKey) {
+        StringBuilder canonical = new StringBuilder("city|").append(VERSION).append("|roads=").append(roadsKey);
+        // in config order: colorQuarters caps the amounts and picks the type for the remainder in that order, so the
+        // same colouring in another order can colour a city differently
+        for (Map.Entry<String, Double> entry : config.coloring.entrySet()) {
+            canonical.append("|").append(entry.getKey()).append("=").append(entry.getValue());
+        }
+        return hash(canonical.toString());
+    }
+
+    private static String hash(String canonical) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // rough retained size: object headers, boxed coordinates and list slots
+    private static long estimateSize(City city) {
+        long size = estimateSize(city.getEdges()) + city.getVertices().size() * 48L;
+        for (List<Building> quarterBuildings : city.getBuildings()) {
+            for (Building building : quarterBuildings) {
+                size += 64 + building.vertexes().size() * 56L;
+            }
+        }
+        return size;
+    }
+
+    private static long estimateSize(RoadNetwork roads) {
+        long size = estimateSize(roads.edges());
+        for (List<Segment> borders : roads.quarterBorders()) {
+            size += 32 + estimateSize(borders);
+        }
+        return size;
+    }
+
+    private static long estimateSize(List<Segment> segments) {
+        return 16 + segments.size() * 56L;
+    }
+}
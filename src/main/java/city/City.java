@@ -3,16 +3,29 @@ package city;
 import geometry.Point;
 import geometry.Randomizer;
 import geometry.Segment;
+import metrics.GenerationMetrics;
+import metrics.PhaseTimer;
 
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 public class City {
 
-    private Graph cityGraph;
+    private RoadNetwork roadNetwork;
+    private List<Quarter> quarters;
     private List<List<Building>> allBuildings;
     private List<Segment> edges;
     private Set<Point> vertices;
 
+    private final Randomizer randomizer;
+    private final ExecutorService executor;
+    private GenerationMetrics metrics = new GenerationMetrics();
+    private boolean lazy;
+    private CityIndex index;
+
     // parameters (configuration)
     private final double MULTIPLIER = 60;
 
@@ -26,25 +39,233 @@ public class City {
 
 
     public City() {
+        this(new Randomizer(), null);
+    }
+
+    public City(ExecutorService executor) {
+        this(new Randomizer(), executor);
+    }
+
+    // with a null executor quarters are filled one after another
+    public City(Randomizer randomizer, ExecutorService executor) {
+        this.randomizer = randomizer;
+        this.executor = executor;
         allBuildings = new ArrayList<>();
     }
 
+    // a finished city restored from stored results, e.g. from a cache
+    public City(List<List<Building>> buildings, List<Segment> edges) {
+        this.randomizer = null;
+        this.executor = null;
+        allBuildings = buildings;
+        setEdges(edges);
+    }
+
     public void generateCity(double startX, double startY, double length, double[][] shapeMultipliers, Map<String, Double> coloringConfig) {
-        generateCityGraph(startX, startY, length, shapeMultipliers);
+        generateCity(startX, startY, length, shapeMultipliers, coloringConfig, null);
+    }
+
+    // quarterListener (if not null) receives every quarter's buildings as soon as they are ready, in quarter order
+    public void generateCity(double startX, double startY, double length, double[][] shapeMultipliers,
+                             Map<String, Double> coloringConfig, Consumer<List<Building>> quarterListener) {
+        // every phase draws from its own generator, so a change in one phase does not shift the others
+        Randomizer graphRandomizer = randomizer.split();
+        Randomizer colorRandomizer = randomizer.split();
+        Randomizer fillRandomizer = randomizer.split();
+
+        PhaseTimer timer = metrics.startPhase(GenerationMetrics.Phase.BORDERS);
+        List<Segment> borders = generateShapedBorders(startX, startY, length, shapeMultipliers, graphRandomizer);
+        timer.stop();
+        generateCity(borders, graphRandomizer, colorRandomizer, fillRandomizer, coloringConfig, quarterListener);
+    }
+
+    // builds and colours the road network only. A quarter is filled the first time its buildings are requested, from
+    // the same per-quarter generator an eager run gives it, so the buildings are the same as after generateCity.
+    public void generateLazyCity(double startX, double startY, double length, double[][] shapeMultipliers,
+                                 Map<String, Double> coloringConfig) {
+        lazy = true;
+        generateCity(startX, startY, length, shapeMultipliers, coloringConfig, null);
+    }
+
+    // generates the city inside a closed outline given as consecutive border segments
+    public void generateCity(List<Segment> borders, Map<String, Double> coloringConfig, Consumer<List<Building>> quarterListener) {
+        Randomizer graphRandomizer = randomizer.split();
+        Randomizer colorRandomizer = randomizer.split();
+        Randomizer fillRandomizer = randomizer.split();
 
-        List<Quarter> quarters = cityGraph.getQuarters();
-        colorQuarters(quarters, coloringConfig);
+        generateCity(borders, graphRandomizer, colorRandomizer, fillRandomizer, coloringConfig, quarterListener);
+    }
+
+    // colours and fills an already generated road network; for the same seed the result matches a full generation
+    public void generateCity(RoadNetwork roads, Map<String, Double> coloringConfig, Consumer<List<Building>> quarterListener) {
+        randomizer.split();
+        Randomizer colorRandomizer = randomizer.split();
+        Randomizer fillRandomizer = randomizer.split();
+
+        fillCity(roads, colorRandomizer, fillRandomizer, coloringConfig, quarterListener);
+    }
+
+    private void generateCity(List<Segment> borders, Randomizer graphRandomizer, Randomizer colorRandomizer,
+                              Randomizer fillRandomizer, Map<String, Double> coloringConfig,
+                              Consumer<List<Building>> quarterListener) {
+        fillCity(generateCityGraph(borders, graphRandomizer), colorRandomizer, fillRandomizer, coloringConfig, quarterListener);
+    }
+
+    private void fillCity(RoadNetwork roads, Randomizer colorRandomizer, Randomizer fillRandomizer,
+                          Map<String, Double> coloringConfig, Consumer<List<Building>> quarterListener) {
+        roadNetwork = roads;
+        setEdges(roads.edges());
+
+        quarters = new ArrayList<>();
+        for (List<Segment> borders : roads.quarterBorders()) {
+            quarters.add(new Quarter(borders));
+        }
+        PhaseTimer timer = metrics.startPhase(GenerationMetrics.Phase.COLORING);
+        colorQuarters(quarters, coloringConfig, colorRandomizer);
+        timer.stop();
+        for (Quarter quarter : quarters) {
+            quarter.setRandomizer(fillRandomizer.split());
+            quarter.setMetrics(metrics);
+        }
+
+        if (lazy) {
+            allBuildings = new ArrayList<>(Collections.nCopies(quarters.size(), null));
+            return;
+        }
 
         allBuildings = new ArrayList<>();
+        timer = metrics.startPhase(GenerationMetrics.Phase.FILL);
+        if (executor == null) {
+            for (Quarter quarter : quarters) {
+                addBuildings(quarter.fill(), quarterListener);
+            }
+            timer.stop();
+            return;
+        }
+
+        // results are collected in submission order, so allBuildings matches the order of quarters
+        List<Future<List<Building>>> fills = new ArrayList<>();
         for (Quarter quarter : quarters) {
-            List<Building> buildings = quarter.fill();
-            if (buildings != null) {
-                allBuildings.add(buildings.stream().filter(b -> !b.vertexes().isEmpty()).toList());
+            fills.add(executor.submit(quarter::fill));
+        }
+        for (Future<List<Building>> fill : fills) {
+            addBuildings(getFilled(fill), quarterListener);
+        }
+        timer.stop();
+    }
+
+    private void addBuildings(List<Building> buildings, Consumer<List<Building>> quarterListener) {
+        if (buildings != null) {
+            List<Building> filtered = filterEmpty(buildings);
+            allBuildings.add(filtered);
+            if (quarterListener != null) {
+                quarterListener.accept(filtered);
             }
         }
     }
 
-    private void colorQuarters(List<Quarter> quarters, Map<String, Double> coloringConfig) {
+    private static List<Building> filterEmpty(List<Building> buildings) {
+        return buildings.stream().filter(b -> !b.vertexes().isEmpty()).toList();
+    }
+
+    // Edits of a generated city. Only the affected quarters are filled again, each from its own generator, so the
+    // rest of the city keeps its buildings. Not available for a city restored from stored results.
+
+    public CityDiff recolourQuarter(int index, String colour) {
+        checkEditable();
+        quarters.get(index).setColour(colour);
+        return new CityDiff(refill(List.of(index)), List.of(), List.of());
+    }
+
+    // every road edge and quarter border ending at "from" follows the vertex to "to"; at a T-junction the edge and
+    // borders running through "from" are split there, so they bend to "to" as well
+    public CityDiff moveVertex(Point from, Point to) {
+        checkEditable();
+        List<Segment> movedEdges = new ArrayList<>(edges.size() + 1);
+        List<Segment> removedEdges = new ArrayList<>();
+        List<Segment> addedEdges = new ArrayList<>();
+        for (Segment edge : edges) {
+            List<Segment> split = edge.getSplitAtMovedPoint(from, to);
+            if (split != null) {
+                removedEdges.add(edge);
+                addedEdges.addAll(split);
+                movedEdges.addAll(split);
+                continue;
+            }
+            Segment moved = edge.getWithMovedPoint(from, to);
+            if (moved != edge) {
+                removedEdges.add(edge);
+                addedEdges.add(moved);
+            }
+            movedEdges.add(moved);
+        }
+
+        List<Integer> changed = new ArrayList<>();
+        List<List<Segment>> quarterBorders = new ArrayList<>();
+        for (int i = 0; i < quarters.size(); i++) {
+            Quarter quarter = quarters.get(i);
+            synchronized (quarter) {
+                if (quarter.moveVertex(from, to)) {
+                    changed.add(i);
+                }
+            }
+            quarterBorders.add(List.of(quarter.getBorders()));
+        }
+
+        index = null;
+        roadNetwork = new RoadNetwork(movedEdges, quarterBorders);
+        setEdges(movedEdges);
+        return new CityDiff(refill(changed), removedEdges, addedEdges);
+    }
+
+    private void checkEditable() {
+        if (quarters == null) {
+            throw new IllegalStateException("City has no quarters to edit");
+        }
+    }
+
+    private List<CityDiff.QuarterChange> refill(List<Integer> indices) {
+        index = null;
+        List<CityDiff.QuarterChange> changes = new ArrayList<>();
+        if (executor == null || indices.size() < 2) {
+            for (int index : indices) {
+                changes.add(refillQuarter(index));
+            }
+        } else {
+            List<Future<CityDiff.QuarterChange>> fills = new ArrayList<>();
+            for (int index : indices) {
+                fills.add(executor.submit(() -> refillQuarter(index)));
+            }
+            for (Future<CityDiff.QuarterChange> fill : fills) {
+                changes.add(getFilled(fill));
+            }
+        }
+        return changes;
+    }
+
+    // under the quarter's lock, as in getQuarterBuildings, so a lazy read of the same quarter cannot fill it at the
+    // same time and have its buildings overwritten
+    private CityDiff.QuarterChange refillQuarter(int index) {
+        Quarter quarter = quarters.get(index);
+        synchronized (quarter) {
+            List<Building> added = filterEmpty(quarter.fill());
+            List<Building> removed = Objects.requireNonNullElse(allBuildings.set(index, added), List.of());
+            return new CityDiff.QuarterChange(index, quarter.getColour(), removed, added);
+        }
+    }
+
+    private <T> T getFilled(Future<T> fill) {
+        try {
+            return fill.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    void colorQuarters(List<Quarter> quarters, Map<String, Double> coloringConfig, Randomizer randomizer) {
         //quarter names: "park" "market" "square" "industrial" "poor" "middle" "rich"
         int number = quarters.size();
         String[] special = {"park", "market", "square"};
@@ -68,55 +289,103 @@ public class City {
         }
 
         if (n < number) {
-            String randomType = coloringConfig.keySet().stream().toList().get((int) (Math.random() * coloringConfig.size()));
+            String randomType = coloringConfig.keySet().stream().toList().get(randomizer.nextInt(coloringConfig.size()));
             typeAmounts.put(randomType, typeAmounts.get(randomType) + (number - n));
         }
 
 //        System.out.println(typeAmounts.keySet());
 
-        List<Quarter> uncolored = new ArrayList<>(quarters);
+        QuarterAdjacency adjacency = new QuarterAdjacency(quarters);
+        int[] order = new int[number];
+        for (int i = 0; i < number; i++) {
+            order[i] = i;
+        }
+        shuffle(order, randomizer);
+
+        // special types must not touch a quarter of the same type: every quarter is visited once in random order and
+        // taken when it is still free and not next to one already taken, so the pass is O(quarters + borders)
+        boolean[] colored = new boolean[number];
+        int shortfall = 0;
         for (String type : special) {
-            int amount = typeAmounts.get(type);
-            for (int i = 0; i < amount; i++) {
-                int qNumber = (int) (Math.random() * uncolored.size());
-                Quarter quarter = uncolored.get(qNumber);
-                if (quarters.stream().anyMatch(s -> (quarter.isNeighbour(s) && type.equals(s.getColour())))) {
-                    i--;
-                    continue;
+            int amount = typeAmounts.getOrDefault(type, 0);
+            boolean[] blocked = new boolean[number];
+            for (int i = 0; i < number && amount > 0; i++) {
+                int q = order[i];
+                if (colored[q] || blocked[q]) continue;
+                quarters.get(q).setColour(type);
+                colored[q] = true;
+                for (int neighbour : adjacency.getNeighbours(q)) {
+                    blocked[neighbour] = true;
                 }
-                quarter.setColour(type);
-                uncolored.remove(qNumber);
+                amount--;
             }
+            // not enough quarters without a same-type neighbour: the rest goes to the regular types
+            shortfall += amount;
         }
 
-
+        // the shortfall goes to the regular type that comes first in the config
+        List<String> usedRegular = coloringConfig.keySet().stream().filter(List.of(regular)::contains).toList();
+        shuffle(order, randomizer);
+        int next = 0;
         for (String type : regular) {
-            int amount = typeAmounts.get(type);
-            for (int i = 0; i < amount; i++) {
-                int qNumber = (int) (Math.random() * uncolored.size());
-                Quarter quarter = uncolored.get(qNumber);
-                quarter.setColour(type);
-                uncolored.remove(qNumber);
+            int amount = typeAmounts.getOrDefault(type, 0);
+            if (!usedRegular.isEmpty() && type.equals(usedRegular.get(0))) {
+                amount += shortfall;
+            }
+            for (; next < number && amount > 0; next++) {
+                int q = order[next];
+                if (colored[q]) continue;
+                quarters.get(q).setColour(type);
+                colored[q] = true;
+                amount--;
+            }
+        }
+
+        // only special types configured: what they could not place goes to the most weighted one, next to its own
+        // type if need be, rather than leaving those quarters with the default colour
+        if (usedRegular.isEmpty() && shortfall > 0) {
+            String fallback = Collections.max(coloringConfig.entrySet(), Map.Entry.comparingByValue()).getKey();
+            for (; next < number && shortfall > 0; next++) {
+                int q = order[next];
+                if (colored[q]) continue;
+                quarters.get(q).setColour(fallback);
+                colored[q] = true;
+                shortfall--;
             }
         }
 
 //        System.out.println(quarters);
     }
 
-    private void generateCityGraph(double startX, double startY, double length, double[][] shapeMultipliers) {
-        List<Segment> borders = generateShapedBorders(startX, startY, length, shapeMultipliers);
-        cityGraph = new Graph(borders);
+    private static void shuffle(int[] values, Randomizer randomizer) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = randomizer.nextInt(i + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    private RoadNetwork generateCityGraph(List<Segment> borders, Randomizer randomizer) {
+        PhaseTimer timer = metrics.startPhase(GenerationMetrics.Phase.GRAPH);
+        Graph cityGraph = new Graph(borders, randomizer, metrics, executor);
+        RoadNetwork roads = RoadNetwork.of(cityGraph, cityGraph.fill());
+        timer.stop();
+        return roads;
+    }
 
-        edges = cityGraph.fill();
+    private void setEdges(List<Segment> edges) {
+        this.edges = edges;
 
-        vertices = new HashSet<>();
+        vertices = new LinkedHashSet<>();
         for (Segment edge : edges) {
             vertices.add(edge.getStartPoint());
             vertices.add(edge.getEndPoint());
         }
     }
 
-    private List<Segment> generateShapedBorders(double startX, double startY, double length, double[][] shapeMultipliers) {
+    List<Segment> generateShapedBorders(double startX, double startY, double length, double[][] shapeMultipliers,
+                                        Randomizer randomizer) {
         double x = startX;
         double y = startY;
         List<Segment> borderSegments = new ArrayList<>();
@@ -124,29 +393,31 @@ public class City {
         int multipliersNumber = shapeMultipliers.length;
 
         for (int i = 0; i < multipliersNumber - 1; i++) {
-            List<Segment> segments = generateSide(x, y, shapeMultipliers[i][0], shapeMultipliers[i][1], length);
+            List<Segment> segments = generateSide(x, y, shapeMultipliers[i][0], shapeMultipliers[i][1], length, randomizer);
             x = segments.get(segments.size() - 1).getX2();
             y = segments.get(segments.size() - 1).getY2();
             borderSegments.addAll(segments);
         }
 
         List<Segment> segments = generateSide(x, y, shapeMultipliers[multipliersNumber - 1][0],
-                shapeMultipliers[multipliersNumber - 1][1], startX, startY);
+                shapeMultipliers[multipliersNumber - 1][1], startX, startY, randomizer);
         borderSegments.addAll(segments);
 
         return borderSegments;
     }
 
-    private List<Segment> generateSide(double startX, double startY, double xMultiplier, double yMultiplier, double sideLength) {
-        double xOffset = Randomizer.nextGaussian() * sideLength * SIDE_LENGTH_ERROR_PERCENT;
+    private List<Segment> generateSide(double startX, double startY, double xMultiplier, double yMultiplier, double sideLength,
+                                       Randomizer randomizer) {
+        double xOffset = randomizer.nextGaussian() * sideLength * SIDE_LENGTH_ERROR_PERCENT;
         double endX = startX + (xMultiplier * sideLength) + xOffset;
-        double yOffset = Randomizer.nextGaussian() * sideLength * SIDE_LENGTH_ERROR_PERCENT;
+        double yOffset = randomizer.nextGaussian() * sideLength * SIDE_LENGTH_ERROR_PERCENT;
         double endY = startY + (yMultiplier * sideLength) + yOffset;
 
-        return generateSide(startX, startY, xMultiplier, yMultiplier, endX, endY);
+        return generateSide(startX, startY, xMultiplier, yMultiplier, endX, endY, randomizer);
     }
 
-    private List<Segment> generateSide(double startX, double startY, double xMultiplier, double yMultiplier, double endX, double endY) {
+    List<Segment> generateSide(double startX, double startY, double xMultiplier, double yMultiplier, double endX, double endY,
+                               Randomizer randomizer) {
         List<Segment> segments = new ArrayList<>();
         double length = 0;
         double x = startX;
@@ -158,14 +429,14 @@ public class City {
         double sideLength = (new Point(startX, startY)).distance(endX, endY);
 
         while (true) {
-            double xLengthDeviation = Randomizer.nextGaussian() * EDGE_LENGTH_RANGE;
+            double xLengthDeviation = randomizer.nextGaussian() * EDGE_LENGTH_RANGE;
             double xLength = xMultiplier * (AVG_EDGE_LENGTH + xLengthDeviation);
-            double xDeviation = Randomizer.nextGaussian() * BORDER_TILT_PERCENT * yMultiplier;
+            double xDeviation = randomizer.nextGaussian() * BORDER_TILT_PERCENT * yMultiplier;
             newX = x + xLength + xDeviation;
 
-            double yLengthDeviation = Randomizer.nextGaussian() * EDGE_LENGTH_RANGE;
+            double yLengthDeviation = randomizer.nextGaussian() * EDGE_LENGTH_RANGE;
             double yLength = yMultiplier * (AVG_EDGE_LENGTH + yLengthDeviation);
-            double yDeviation = Randomizer.nextGaussian() * BORDER_TILT_PERCENT * xMultiplier;
+            double yDeviation = randomizer.nextGaussian() * BORDER_TILT_PERCENT * xMultiplier;
             newY = y + yLength + yDeviation;
 
             Segment segment = new Segment(x, y, newX, newY);
@@ -181,8 +452,8 @@ public class City {
                     segments.add(segment);
                     break;
                 } else if (lengthLeft > 0) {
-                    newX = x + (xMultiplier * (lengthLeft + segment.length() / 2) + (xMultiplier * 0.5 * Randomizer.nextGaussian()));
-                    newY = y + (yMultiplier * (lengthLeft + segment.length() / 2) + (yMultiplier * 0.5 * Randomizer.nextGaussian()));
+                    newX = x + (xMultiplier * (lengthLeft + segment.length() / 2) + (xMultiplier * 0.5 * randomizer.nextGaussian()));
+                    newY = y + (yMultiplier * (lengthLeft + segment.length() / 2) + (yMultiplier * 0.5 * randomizer.nextGaussian()));
                     segment = new Segment(x, y, newX, newY);
                 }
             }
@@ -194,10 +465,67 @@ public class City {
         return segments;
     }
 
+    // in lazy mode every quarter not filled yet is filled first
     public List<List<Building>> getBuildings() {
+        if (lazy) {
+            fillRemaining();
+        }
         return allBuildings;
     }
 
+    // built on first use, once the city is finished; an edit drops it
+    public synchronized CityIndex getIndex() {
+        if (index == null) {
+            index = new CityIndex(getBuildings(), edges);
+        }
+        return index;
+    }
+
+    public int getQuarterCount() {
+        return quarters != null ? quarters.size() : allBuildings.size();
+    }
+
+    public String getQuarterColour(int index) {
+        return quarters.get(index).getColour();
+    }
+
+    // buildings of one quarter; in lazy mode the quarter is filled on the first request, safe to call from several threads
+    public List<Building> getQuarterBuildings(int index) {
+        if (!lazy) {
+            return allBuildings.get(index);
+        }
+        Quarter quarter = quarters.get(index);
+        synchronized (quarter) {
+            List<Building> buildings = allBuildings.get(index);
+            if (buildings == null) {
+                buildings = filterEmpty(quarter.fill());
+                allBuildings.set(index, buildings);
+            }
+            return buildings;
+        }
+    }
+
+    private void fillRemaining() {
+        if (executor == null) {
+            for (int i = 0; i < quarters.size(); i++) {
+                getQuarterBuildings(i);
+            }
+            return;
+        }
+        List<Future<List<Building>>> fills = new ArrayList<>();
+        for (int i = 0; i < quarters.size(); i++) {
+            int index = i;
+            fills.add(executor.submit(() -> getQuarterBuildings(index)));
+        }
+        for (Future<List<Building>> fill : fills) {
+            getFilled(fill);
+        }
+    }
+
+    public RoadNetwork getRoadNetwork() {
+        return roadNetwork;
+    }
+
     public List<Segment> getEdges() {
         return edges;
     }
@@ -205,4 +533,13 @@ public class City {
     public Set<Point> getVertices() {
         return vertices;
     }
+
+    public GenerationMetrics getMetrics() {
+        return metrics;
+    }
+
+    // lets several cities (e.g. the tiles of a region) report into one set of metrics
+    public void setMetrics(GenerationMetrics metrics) {
+        this.metrics = metrics;
+    }
 }
@@ -8,7 +8,41 @@ public class CityConfig {
     public String shape;
     public Double sideLength;
     public Map<String, Double> coloring;
+    public Integer threads;
+    public Long seed;
+    public Boolean compact;
+    // [columns, rows]: generate a tiled region of sideLength-sized tiles instead of one city
+    public List<Integer> tiles;
+    // [first, last]: batch mode runs this config once for every seed in the range
+    public List<Long> seeds;
+    // "json" (default) or "binary"
+    public String format;
+    // only the road graph is written; quarters are coloured but never filled
+    public Boolean roadsOnly;
+    // also write a z/x/y tile pyramid with zoom levels 0..maxZoom, at most MAX_ZOOM
+    public Integer maxZoom;
+    // gzip the JSON files, which are then named <file>.gz
+    public Boolean compress;
+
+    public static final int MAX_ZOOM = 20;
 
     public CityConfig() {
     }
+
+    public CityConfig withSeed(long seed) {
+        CityConfig config = new CityConfig();
+        config.start = start;
+        config.shape = shape;
+        config.sideLength = sideLength;
+        config.coloring = coloring;
+        config.threads = threads;
+        config.seed = seed;
+        config.compact = compact;
+        config.tiles = tiles;
+        config.format = format;
+        config.roadsOnly = roadsOnly;
+        config.maxZoom = maxZoom;
+        config.compress = compress;
+        return config;
+    }
 }
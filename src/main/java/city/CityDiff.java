@@ -0,0 +1,12 @@
+package city;
+
+import geometry.Segment;
+
+import java.util.List;
+
+// What an edit of a city changed: the quarters that were refilled and the road edges that were replaced
+public record CityDiff(List<QuarterChange> quarters, List<Segment> removedEdges, List<Segment> addedEdges) {
+
+    public record QuarterChange(int index, String colour, List<Building> removed, List<Building> added) {
+    }
+}
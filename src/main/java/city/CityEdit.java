@@ -0,0 +1,22 @@
+package city;
+
+import geometry.Point;
+
+// One change of a generated city: either a new colour for a quarter or a road vertex moved to a new position
+public record CityEdit(Integer quarter, String colour, Point from, Point to) {
+
+    public static CityEdit recolour(int quarter, String colour) {
+        return new CityEdit(quarter, colour, null, null);
+    }
+
+    public static CityEdit moveVertex(Point from, Point to) {
+        return new CityEdit(null, null, from, to);
+    }
+
+    public CityDiff applyTo(City city) {
+        if (quarter != null) {
+            return city.recolourQuarter(quarter, colour);
+        }
+        return city.moveVertex(from, to);
+    }
+}
@@ -0,0 +1,19 @@
+package city;
+
+import geometry.Segment;
+
+import java.util.List;
+
+// What CityPublisher emits, in this order: the roads once, every quarter's outline and colour, then the buildings of
+// every quarter. Quarters are numbered as in City.getBuildings.
+public sealed interface CityEvent {
+
+    record Roads(RoadNetwork roads) implements CityEvent {
+    }
+
+    record QuarterColoured(int index, String colour, List<Segment> borders) implements CityEvent {
+    }
+
+    record QuarterBuildings(int index, List<Building> buildings) implements CityEvent {
+    }
+}
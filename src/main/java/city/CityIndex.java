@@ -0,0 +1,126 @@
+package city;
+
+import geometry.Point;
+import geometry.RTree;
+import geometry.Segment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Spatial index over the buildings and road edges of a finished city, for viewport and hit-test queries
+public class CityIndex {
+
+    private final RTree<Building> buildings;
+    private final RTree<Segment> edges;
+
+    public record Viewport(List<Building> buildings, List<Segment> edges) {
+    }
+
+    public CityIndex(List<List<Building>> buildings, List<Segment> edges) {
+        List<Building> allBuildings = new ArrayList<>();
+        for (List<Building> quarterBuildings : buildings) {
+            allBuildings.addAll(quarterBuildings);
+        }
+        this.buildings = new RTree<>(allBuildings, CityIndex::getBounds, CityIndex::getDistance);
+        this.edges = new RTree<>(edges, CityIndex::getBounds, CityIndex::getDistance);
+    }
+
+    // buildings and edges whose bounding boxes overlap the box
+    public Viewport query(double minX, double minY, double maxX, double maxY) {
+        return new Viewport(buildings.query(minX, minY, maxX, maxY), edges.query(minX, minY, maxX, maxY));
+    }
+
+    public List<Building> queryBuildings(double minX, double minY, double maxX, double maxY) {
+        return buildings.query(minX, minY, maxX, maxY);
+    }
+
+    public List<Segment> queryEdges(double minX, double minY, double maxX, double maxY) {
+        return edges.query(minX, minY, maxX, maxY);
+    }
+
+    public Building getNearestBuilding(double x, double y) {
+        return buildings.nearest(x, y);
+    }
+
+    public List<Building> getNearestBuildings(double x, double y, int count) {
+        return buildings.nearest(x, y, count);
+    }
+
+    public Segment getNearestEdge(double x, double y) {
+        return edges.nearest(x, y);
+    }
+
+    // the building containing the point, or null
+    public Building getBuildingAt(double x, double y) {
+        for (Building building : buildings.query(x, y, x, y)) {
+            if (contains(building.vertexes(), x, y)) {
+                return building;
+            }
+        }
+        return null;
+    }
+
+    private static double[] getBounds(Building building) {
+        double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (Point vertex : building.vertexes()) {
+            bounds[0] = Math.min(bounds[0], vertex.x);
+            bounds[1] = Math.min(bounds[1], vertex.y);
+            bounds[2] = Math.max(bounds[2], vertex.x);
+            bounds[3] = Math.max(bounds[3], vertex.y);
+        }
+        return bounds;
+    }
+
+    private static double[] getBounds(Segment edge) {
+        return new double[]{Math.min(edge.getX1(), edge.getX2()), Math.min(edge.getY1(), edge.getY2()),
+                Math.max(edge.getX1(), edge.getX2()), Math.max(edge.getY1(), edge.getY2())};
+    }
+
+    // zero inside the polygon, otherwise the distance to its outline
+    private static double getDistance(Building building, double x, double y) {
+        List<Point> vertices = building.vertexes();
+        if (contains(vertices, x, y)) {
+            return 0;
+        }
+        double distance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < vertices.size(); i++) {
+            Point start = vertices.get(i);
+            Point end = vertices.get((i + 1) % vertices.size());
+            distance = Math.min(distance, getDistance(start.x, start.y, end.x, end.y, x, y));
+        }
+        return distance;
+    }
+
+    private static double getDistance(Segment edge, double x, double y) {
+        return getDistance(edge.getX1(), edge.getY1(), edge.getX2(), edge.getY2(), x, y);
+    }
+
+    private static double getDistance(double x1, double y1, double x2, double y2, double x, double y) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared > 0 ? Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared)) : 0;
+        return Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+
+    // even-odd ray casting
+    private static boolean contains(List<Point> vertices, double x, double y) {
+        boolean inside = false;
+        for (int i = 0, j = vertices.size() - 1; i < vertices.size(); j = i++) {
+            Point a = vertices.get(i);
+            Point b = vertices.get(j);
+            if ((a.y > y) != (b.y > y) && x < (b.x - a.x) * (y - a.y) / (b.y - a.y) + a.x) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    public int getBuildingCount() {
+        return buildings.size();
+    }
+
+    public int getEdgeCount() {
+        return edges.size();
+    }
+}
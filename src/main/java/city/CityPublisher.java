@@ -0,0 +1,227 @@
+package city;
+
+import geometry.Randomizer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Flow;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Publishes a city while it is generated (see CityEvent for the order). The roads and colours are generated on the
+// first request; a quarter is only filled once the subscriber has asked for its buildings, so a slow subscriber holds
+// generation back instead of letting results pile up. With an executor, events are delivered from it and up to the
+// requested number of quarters are filled in parallel ahead of delivery; without one, they are delivered from the
+// thread calling request. The buildings are the same as from City.generateCity with the same randomizer.
+// There is one city per publisher, so it takes a single subscriber; later ones get an IllegalStateException.
+public class CityPublisher implements Flow.Publisher<CityEvent> {
+
+    // quarters filled ahead of delivery at most, however much is requested
+    private static final int MAX_FILLS_AHEAD = 64;
+
+    private final City city;
+    private final ExecutorService executor;
+    private final double startX;
+    private final double startY;
+    private final double length;
+    private final double[][] shapeMultipliers;
+    private final Map<String, Double> coloringConfig;
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public CityPublisher(Randomizer randomizer, ExecutorService executor, double startX, double startY, double length,
+                         double[][] shapeMultipliers, Map<String, Double> coloringConfig) {
+        this.city = new City(randomizer, executor);
+        this.executor = executor;
+        this.startX = startX;
+        this.startY = startY;
+        this.length = length;
+        this.shapeMultipliers = shapeMultipliers;
+        this.coloringConfig = coloringConfig;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CityEvent> subscriber) {
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("CityPublisher takes a single subscriber"));
+            return;
+        }
+        CitySubscription subscription = new CitySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+    }
+
+    // the city being published; its buildings are complete once the last event is delivered
+    public City getCity() {
+        return city;
+    }
+
+    private class CitySubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super CityEvent> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        // the drain loop runs while this is above zero; request and cancel only raise it, so one thread delivers
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean cancelled;
+        private volatile Throwable requestError;
+
+        // touched by the drain loop only
+        private boolean done;
+        private int emitted;
+        private int quarterCount = -1;
+        private final List<FutureTask<List<Building>>> fills = new ArrayList<>();
+
+        CitySubscription(Flow.Subscriber<? super CityEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("Requested " + n + " events");
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            schedule();
+        }
+
+        private void schedule() {
+            if (pending.getAndIncrement() != 0) {
+                return;
+            }
+            if (executor == null) {
+                drain();
+            } else {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                if (!done) {
+                    try {
+                        deliver();
+                    } catch (RuntimeException e) {
+                        // generation failures are caught in deliver, so this came from the subscriber's own onComplete
+                        // or onError; it is not signalled back to it (Reactive Streams 2.13)
+                        finish(null);
+                    }
+                }
+                missed = pending.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        private void deliver() {
+            while (!done) {
+                if (cancelled) {
+                    finish(null);
+                    return;
+                }
+                if (requestError != null) {
+                    finish(requestError);
+                    return;
+                }
+                if (demand.get() == 0) {
+                    return;
+                }
+                if (quarterCount >= 0 && emitted == 1 + 2 * quarterCount) {
+                    done = true;
+                    subscriber.onComplete();
+                    return;
+                }
+                CityEvent event;
+                try {
+                    event = next();
+                } catch (RuntimeException e) {
+                    finish(e);
+                    return;
+                }
+                demand.decrementAndGet();
+                emitted++;
+                try {
+                    subscriber.onNext(event);
+                } catch (RuntimeException e) {
+                    // a subscriber that throws is treated as having cancelled, not told about its own failure (2.13)
+                    finish(null);
+                    return;
+                }
+            }
+        }
+
+        private CityEvent next() {
+            if (emitted == 0) {
+                city.generateLazyCity(startX, startY, length, shapeMultipliers, coloringConfig);
+                quarterCount = city.getQuarterCount();
+                return new CityEvent.Roads(city.getRoadNetwork());
+            }
+            if (emitted <= quarterCount) {
+                int index = emitted - 1;
+                return new CityEvent.QuarterColoured(index, city.getQuarterColour(index),
+                        city.getRoadNetwork().quarterBorders().get(index));
+            }
+            int index = emitted - 1 - quarterCount;
+            return new CityEvent.QuarterBuildings(index, getBuildings(index));
+        }
+
+        // starts fills for the quarters that are requested but not yet filled, then waits for this one; a fill no
+        // worker has started yet runs here, so a busy pool (or one running this loop) does not wait on itself
+        private List<Building> getBuildings(int index) {
+            if (executor == null) {
+                return city.getQuarterBuildings(index);
+            }
+            long ahead = Math.min(Math.min(demand.get(), MAX_FILLS_AHEAD), quarterCount - index);
+            while (fills.size() < index + ahead) {
+                int quarter = fills.size();
+                FutureTask<List<Building>> fill = new FutureTask<>(() -> city.getQuarterBuildings(quarter));
+                fills.add(fill);
+                executor.execute(fill);
+            }
+            FutureTask<List<Building>> fill = fills.get(index);
+            fills.set(index, null);
+            fill.run();
+            try {
+                return fill.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        // error is null for a cancellation, which is not reported to the subscriber
+        private void finish(Throwable error) {
+            done = true;
+            for (FutureTask<List<Building>> fill : fills) {
+                if (fill != null) {
+                    fill.cancel(false);
+                }
+            }
+            if (error != null) {
+                subscriber.onError(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package city;
+
+import geometry.SegmentGrid;
+import geometry.SegmentStore;
+
+// Working state of Graph.fill and Quarter.fill, one set per thread, reused from one quarter (or city) to the next.
+// It is cleared before every use and never leaves the fill; only the roads and buildings produced are kept.
+final class GenerationScratch {
+
+    private static final ThreadLocal<GenerationScratch> SCRATCH = ThreadLocal.withInitial(GenerationScratch::new);
+
+    // Quarter.fill
+    final SegmentStore verticalWalls = new SegmentStore(64);
+    final SegmentStore buildingsVerticalWalls = new SegmentStore(64);
+    private int[] verticalWallGroups = new int[16];
+
+    // Graph.fill
+    private SegmentGrid bordersGrid;
+    private SegmentGrid verticalEdgesGrid;
+    private SegmentGrid ringGrid;
+    private SegmentGrid innerEdgesGrid;
+
+    private GenerationScratch() {
+    }
+
+    static GenerationScratch get() {
+        return SCRATCH.get();
+    }
+
+    int[] getVerticalWallGroups(int size) {
+        if (verticalWallGroups.length < size) {
+            verticalWallGroups = new int[Math.max(size, verticalWallGroups.length * 2)];
+        }
+        return verticalWallGroups;
+    }
+
+    SegmentGrid getBordersGrid(double cellSize) {
+        return bordersGrid = prepare(bordersGrid, cellSize);
+    }
+
+    SegmentGrid getVerticalEdgesGrid(double cellSize) {
+        return verticalEdgesGrid = prepare(verticalEdgesGrid, cellSize);
+    }
+
+    SegmentGrid getRingGrid(double cellSize) {
+        return ringGrid = prepare(ringGrid, cellSize);
+    }
+
+    SegmentGrid getInnerEdgesGrid(double cellSize) {
+        return innerEdgesGrid = prepare(innerEdgesGrid, cellSize);
+    }
+
+    private static SegmentGrid prepare(SegmentGrid grid, double cellSize) {
+        if (grid == null || grid.getCellSize() != cellSize) {
+            return new SegmentGrid(cellSize);
+        }
+        grid.clear();
+        return grid;
+    }
+}
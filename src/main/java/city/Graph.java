@@ -1,64 +1,161 @@
 package city;
 
+import geometry.GeometryKernel;
 import geometry.Point;
 import geometry.Randomizer;
 import geometry.Segment;
+import geometry.SegmentGrid;
+import metrics.GenerationMetrics;
+import metrics.PhaseTimer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 
 public class Graph {
     private final List<Segment> edges;
+    private final Randomizer randomizer;
+    private final GenerationMetrics metrics;
+    private final ExecutorService executor;
 
     private final double MULTIPLIER = 60;
     private final double MIN_EDGE_LENGTH = 0.8 * MULTIPLIER;
     private final double MAX_EDGE_LENGTH = 1.5 * MULTIPLIER;
+    private final double GRID_CELL_SIZE = MAX_EDGE_LENGTH;
+    // borders per parallel proposal task
+    private static final int PROPOSAL_CHUNK_SIZE = 32;
 
     private List<Segment> innerEdges;
+    private SegmentGrid innerEdgesGrid;
     private List<Quarter> quarters;
 
     public Graph(List<Segment> edges) {
+        this(edges, new Randomizer());
+    }
+
+    public Graph(List<Segment> edges, Randomizer randomizer) {
+        this(edges, randomizer, GenerationMetrics.NONE);
+    }
+
+    public Graph(List<Segment> edges, Randomizer randomizer, GenerationMetrics metrics) {
+        this(edges, randomizer, metrics, null);
+    }
+
+    // with an executor the vertical edges of each ring are proposed in parallel; the result does not depend on it
+    public Graph(List<Segment> edges, Randomizer randomizer, GenerationMetrics metrics, ExecutorService executor) {
         this.edges = edges;
+        this.randomizer = randomizer;
+        this.metrics = metrics;
+        this.executor = executor;
+    }
+
+    // a vertical edge proposed from a border; whether it is kept is decided later, in border order
+    private record Candidate(Segment edge, boolean last, boolean crossesBorders) {
     }
 
     private List<Segment> generateVerticalEdges(List<Segment> borders, double maxLengthMultiplier, double minLengthMultiplier) {
-        List<Segment> verticalEdges = new ArrayList<>();
+        GenerationScratch scratch = GenerationScratch.get();
+        SegmentGrid bordersGrid = scratch.getBordersGrid(GRID_CELL_SIZE);
+        bordersGrid.addAll(borders);
         double maxLength = maxLengthMultiplier * MAX_EDGE_LENGTH;
         double minLength = minLengthMultiplier * MIN_EDGE_LENGTH;
 
+        // every border draws from its own randomizer, so its proposals do not depend on the other borders
+        List<Randomizer> randomizers = new ArrayList<>(borders.size());
         for (int i = 0; i < borders.size(); i++) {
+            randomizers.add(randomizer.split());
+        }
+        List<List<Candidate>> candidates = new ArrayList<>(Collections.nCopies(borders.size(), null));
+        if (executor == null || borders.size() < 2 * PROPOSAL_CHUNK_SIZE) {
+            proposeVerticalEdges(borders, 0, borders.size(), bordersGrid, minLength, maxLength, randomizers, candidates);
+        } else {
+            proposeVerticalEdgesInParallel(borders, bordersGrid, minLength, maxLength, randomizers, candidates);
+        }
+
+        return acceptVerticalEdges(borders, candidates, scratch.getVerticalEdgesGrid(GRID_CELL_SIZE));
+    }
+
+    private void proposeVerticalEdgesInParallel(List<Segment> borders, SegmentGrid bordersGrid, double minLength, double maxLength,
+                                                List<Randomizer> randomizers, List<List<Candidate>> candidates) {
+        List<FutureTask<Void>> chunks = new ArrayList<>();
+        for (int start = 0; start < borders.size(); start += PROPOSAL_CHUNK_SIZE) {
+            int from = start;
+            int to = Math.min(start + PROPOSAL_CHUNK_SIZE, borders.size());
+            FutureTask<Void> chunk = new FutureTask<>(() ->
+                    proposeVerticalEdges(borders, from, to, bordersGrid, minLength, maxLength, randomizers, candidates), null);
+            executor.execute(chunk);
+            chunks.add(chunk);
+        }
+
+        try {
+            // chunks no worker has started yet are run here, so a busy pool (or a fill running on it) does not wait on itself
+            for (FutureTask<Void> chunk : chunks) {
+                chunk.run();
+            }
+            for (FutureTask<Void> chunk : chunks) {
+                chunk.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    // walks borders [from, to) and proposes perpendicular edges along them; only reads the grid of borders
+    private void proposeVerticalEdges(List<Segment> borders, int from, int to, SegmentGrid bordersGrid, double minLength, double maxLength,
+                                      List<Randomizer> randomizers, List<List<Candidate>> candidates) {
+        for (int i = from; i < to; i++) {
             Segment edge = borders.get(i);
+            Randomizer edgeRandomizer = randomizers.get(i);
+            List<Candidate> edgeCandidates = new ArrayList<>();
+            candidates.set(i, edgeCandidates);
             if (edge.length() < minLength) continue; //добавить проверку на тупой угол?
             double x = edge.getX1();
             double y = edge.getY1();
 
-            Segment nextEdge = borders.get((i + 1) % borders.size());
-
             while (true) {
-                double length = Randomizer.randomMinMax(minLength, maxLength);
+                double length = edgeRandomizer.randomMinMax(minLength, maxLength);
                 Segment lengthSegment = edge.getParallel(x, y, length);
                 x = lengthSegment.getX2();
                 y = lengthSegment.getY2();
 
-                double lengthLeft = new Point(x, y).distance(edge.getEndPoint());
+                double lengthLeft = GeometryKernel.distance(x, y, edge.getX2(), edge.getY2());
                 if (!edge.isOnSegment(x, y) || lengthLeft < minLength) {
                     x = edge.getX2();
                     y = edge.getY2();
-                    Segment newEdge = edge.getTiltedPerpendicular(x, y, Randomizer.randomMinMax(minLength, maxLength), 0.4, 0.4);
-                    if (!newEdge.intersectsExtended(borders) && !newEdge.intersectsExtended(verticalEdges)) {
-                        double angle = newEdge.getAngleCos(nextEdge);
-                        if (angle > 0.75) {
-                            break;
-                        }
-                        verticalEdges.add(newEdge);
-                    }
+                    Segment newEdge = edge.getTiltedPerpendicular(x, y, edgeRandomizer.randomMinMax(minLength, maxLength), 0.4, 0.4, edgeRandomizer);
+                    edgeCandidates.add(new Candidate(newEdge, true, bordersGrid.intersectsExtended(newEdge)));
                     break;
                 }
 
-                Segment newEdge = edge.getTiltedPerpendicular(x, y, Randomizer.randomMinMax(minLength, maxLength), 0.4, 0.4);
-                if (!newEdge.intersectsExtended(borders) && !newEdge.intersects(verticalEdges)) {
-                    verticalEdges.add(newEdge);
+                Segment newEdge = edge.getTiltedPerpendicular(x, y, edgeRandomizer.randomMinMax(minLength, maxLength), 0.4, 0.4, edgeRandomizer);
+                edgeCandidates.add(new Candidate(newEdge, false, bordersGrid.intersectsExtended(newEdge)));
+            }
+        }
+    }
+
+    // keeps candidates in border order that do not cross the borders or the edges kept before them;
+    // the edge at the end of a border must also not be too close in direction to the next border
+    private List<Segment> acceptVerticalEdges(List<Segment> borders, List<List<Candidate>> candidates, SegmentGrid verticalEdgesGrid) {
+        List<Segment> verticalEdges = new ArrayList<>();
+        for (int i = 0; i < borders.size(); i++) {
+            Segment nextEdge = borders.get((i + 1) % borders.size());
+            for (Candidate candidate : candidates.get(i)) {
+                Segment newEdge = candidate.edge();
+                boolean crosses = candidate.crossesBorders() || (candidate.last()
+                        ? verticalEdgesGrid.intersectsExtended(newEdge)
+                        : verticalEdgesGrid.intersects(newEdge));
+                if (crosses || (candidate.last() && newEdge.getAngleCos(nextEdge) > 0.75)) {
+                    metrics.increment(GenerationMetrics.Counter.REJECTED_EDGES);
+                    continue;
                 }
+                verticalEdges.add(newEdge);
+                verticalEdgesGrid.add(newEdge);
             }
         }
         return verticalEdges;
@@ -66,6 +163,8 @@ public class Graph {
 
     private List<Segment> generateHorizontalEdges(List<Segment> verticalEdges, List<Segment> innerBorders) {
         List<Segment> horizontalEdges = new ArrayList<>();
+        SegmentGrid verticalEdgesGrid = GenerationScratch.get().getRingGrid(GRID_CELL_SIZE);
+        verticalEdgesGrid.addAll(verticalEdges);
         int size = verticalEdges.size();
         for (int i = 0; i < size; i++) {
             Segment firstEdge = verticalEdges.get(i);
@@ -79,9 +178,10 @@ public class Graph {
             double firstEdgeCos = firstEdge.getAngleCos(newEdge);
             double secondEdgeCos = secondEdge.getAngleCos(newEdge.getReversed());
 
-            if (newEdge.intersectsExtended(verticalEdges) || newEdge.intersects(innerEdges) ||
+            if (verticalEdgesGrid.intersectsExtended(newEdge) || innerEdgesGrid.intersects(newEdge) ||
                     firstEdgeCos > 0.65 || secondEdgeCos > 0.65) { // добавить проверку на угол с соседним вертикальным ребром?
-                verticalEdges.remove(secondEdgeIndex);
+                metrics.increment(GenerationMetrics.Counter.HORIZONTAL_BACKTRACKS);
+                verticalEdgesGrid.remove(verticalEdges.remove(secondEdgeIndex));
                 if (!horizontalEdges.isEmpty()) {
                     horizontalEdges.remove(horizontalEdges.size() - 1);
                     quarters.remove(quarters.size() - 1);
@@ -132,7 +232,7 @@ public class Graph {
         }
 
         if (firstEdgeBaseIndex == -1 || secondEdgeBaseIndex == -1) {
-            System.out.println("WHAT");
+            metrics.increment(GenerationMetrics.Counter.UNMATCHED_QUARTER_BASES);
             quarterBorders.add(new Segment(quarterVertices.get(3), quarterVertices.get(0)));
         } else if (firstEdgeBaseIndex == secondEdgeBaseIndex) {
             quarterBorders.add(new Segment(quarterVertices.get(3), quarterVertices.get(0)));
@@ -153,30 +253,38 @@ public class Graph {
     public List<Segment> fill() {
         quarters = new ArrayList<>();
         innerEdges = new ArrayList<>(edges);
+        innerEdgesGrid = GenerationScratch.get().getInnerEdgesGrid(GRID_CELL_SIZE);
+        innerEdgesGrid.addAll(edges);
 
         double maxLengthMultiplier = 1;
         double minLengthMultiplier = 1;
 
         List<Segment> verticalEdges = generateVerticalEdges(edges, maxLengthMultiplier, minLengthMultiplier);
 
-        List<Segment> horizontalEdges = new ArrayList<>(edges);
-        List<Segment> innerPolygon = new ArrayList<>(edges);
+        // rings are never changed once generated, so they are shared rather than copied
+        List<Segment> horizontalEdges = edges;
+        List<Segment> innerPolygon = edges;
 
         while (verticalEdges.size() > 1 && verticalEdges.stream().anyMatch(segment -> segment.length() > 0)) {
+            PhaseTimer ring = metrics.startPhase(GenerationMetrics.Phase.RING);
             horizontalEdges = generateHorizontalEdges(verticalEdges, horizontalEdges);
             if (!horizontalEdges.isEmpty()) {
-                innerPolygon = new ArrayList<>(horizontalEdges);
+                innerPolygon = horizontalEdges;
             }
             innerEdges.addAll(verticalEdges);
             innerEdges.addAll(horizontalEdges);
+            innerEdgesGrid.addAll(verticalEdges);
+            innerEdgesGrid.addAll(horizontalEdges);
 
             maxLengthMultiplier *= 0.8;
             minLengthMultiplier *= 0.95;
 
             verticalEdges = generateVerticalEdges(horizontalEdges, maxLengthMultiplier, minLengthMultiplier);
+            ring.stop();
         }
         innerEdges.addAll(verticalEdges);
         quarters.add(new Quarter(innerPolygon));
+        innerEdgesGrid = null;
 
         return innerEdges;
     }
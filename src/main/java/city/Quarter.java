@@ -1,19 +1,29 @@
 package city;
 
+import geometry.GeometryKernel;
 import geometry.Point;
 import geometry.Randomizer;
 import geometry.Segment;
+import geometry.SegmentStore;
+import metrics.FillTimer;
+import metrics.GenerationMetrics;
 
 import java.util.*;
 
 public class Quarter {
 
-    private final Segment[] borders;
+    private Segment[] borders;
     private String colour;
+    private Randomizer randomizer;
+    private GenerationMetrics metrics;
 
-    private final List<List<Segment>> verticalWalls;
-    private final List<Segment> buildingsVerticalWalls;
-    private final List<Building> buildings;
+    // walls of all borders, grouped by border: group i starts at id verticalWallGroups[i]
+    // (working state, borrowed from the thread's GenerationScratch for the duration of fill)
+    private SegmentStore verticalWalls;
+    private int[] verticalWallGroups;
+    private int verticalWallGroupCount;
+    private SegmentStore buildingsVerticalWalls;
+    private List<Building> buildings;
 
     // parameters (configuration)
     private final double SIZE_MULTIPLIER = 30;
@@ -34,13 +44,35 @@ public class Quarter {
 
     public Quarter(List<Segment> borders, String color) {
         this.borders = borders.toArray(new Segment[0]);
-        verticalWalls = new ArrayList<>();
-        buildingsVerticalWalls = new ArrayList<>();
         buildings = new ArrayList<>();
         this.colour = color;
+        this.randomizer = new Randomizer();
+        this.metrics = GenerationMetrics.NONE;
     }
 
+    // may be called again after an edit: everything from the previous fill is dropped first
     public List<Building> fill() {
+        FillTimer timer = metrics.startFill(colour);
+        GenerationScratch scratch = GenerationScratch.get();
+        verticalWalls = scratch.verticalWalls;
+        verticalWalls.clear();
+        verticalWallGroups = scratch.getVerticalWallGroups(Math.max(borders.length, 1));
+        verticalWallGroupCount = 0;
+        buildingsVerticalWalls = scratch.buildingsVerticalWalls;
+        buildingsVerticalWalls.clear();
+        buildings = new ArrayList<>();
+        try {
+            generateBuildings();
+        } finally {
+            verticalWalls = null;
+            verticalWallGroups = null;
+            buildingsVerticalWalls = null;
+        }
+        timer.stop(buildings.size());
+        return buildings;
+    }
+
+    private void generateBuildings() {
         generateVerticalWalls();
 
         if (colour.equals("square") || colour.equals("park")) {
@@ -50,21 +82,19 @@ public class Quarter {
                 vertices.add(border.getEndPoint());
             }
             buildings.add(new Building(colour, vertices));
-            return buildings;
+            return;
         }
 
-        if (verticalWalls.stream().flatMap(Collection::stream).toList().size() < 3) {
+        if (verticalWalls.size() < 3) {
             List<Point> vertices = new ArrayList<>();
             for (Segment border : borders) {
                 vertices.add(border.getEndPoint());
             }
             buildings.add(new Building(colour, vertices));
-            return buildings;
+            return;
         }
 
         generateHorizontalWalls();
-
-        return buildings;
     }
 
 
@@ -73,20 +103,19 @@ public class Quarter {
             Segment edge = borders[i];
             if (edge.length() < MIN_WALL_LENGTH) continue;
 
-            List<Segment> wallsForEdge = new ArrayList<>();
+            int groupStart = verticalWalls.size();
             double x = edge.getX1();
             double y = edge.getY1();
 
             while (true) {
                 //double length = MIN_WALL_LENGTH + nextGaussian() * (MAX_WALL_LENGTH - MIN_WALL_LENGTH);{
-                double length = Randomizer.randomAverage(AVG_WALL_LENGTH, WALL_LENGTH_RANGE);
-                Segment lengthSegment = edge.getParallel(x, y, length);
-                x = lengthSegment.getX2();
-                y = lengthSegment.getY2();
+                double length = randomizer.randomAverage(AVG_WALL_LENGTH, WALL_LENGTH_RANGE);
+                x = edge.getParallelEndX(x, length);
+                y = edge.getParallelEndY(y, length);
 
-                Segment lengthLeft = new Segment(x, y, edge.getX2(), edge.getY2());
+                double lengthLeft = GeometryKernel.distance(x, y, edge.getX2(), edge.getY2());
 
-                if (!edge.isOnSegment(x, y) || lengthLeft.length() < MIN_WALL_LENGTH) {
+                if (!edge.isOnSegment(x, y) || lengthLeft < MIN_WALL_LENGTH) {
                     Segment nextEdge = borders[(borders.length + i + 1) % borders.length];
                     if (edge.getReversed().getAngleCos(nextEdge) < 0) {
                         Segment average = edge.getAverageSegment(nextEdge.getReversed()).getParallel(edge.getX2(), edge.getY2(), MAX_LENGTH);
@@ -94,37 +123,41 @@ public class Quarter {
                             //average = edge.getAverageSegment(nextEdge.getReversed()).getParallel(edge.getX2(), edge.getY2(), -MAX_LENGTH);
                             break;
                         }
-                        wallsForEdge.add(average);
+                        verticalWalls.add(average);
                     }
                     break;
                 }
 
-                wallsForEdge.add(edge.getPerpendicular(x, y, MAX_LENGTH));
+                verticalWalls.add(x, y, edge.getPerpendicularEndX(x, MAX_LENGTH), edge.getPerpendicularEndY(y, MAX_LENGTH));
             }
-            if (wallsForEdge.size() != 0) {
-                verticalWalls.add(wallsForEdge);
+            if (verticalWalls.size() != groupStart) {
+                verticalWallGroups[verticalWallGroupCount++] = groupStart;
             }
         }
     }
 
+    private int getWallGroupEnd(int group) {
+        return group + 1 < verticalWallGroupCount ? verticalWallGroups[group + 1] : verticalWalls.size();
+    }
+
 
+    // groups are stored back to back, so the wall before the start of a group is the last wall of the previous group;
+    // every wall is built once and then serves as previousWall for the next one
     private void generateHorizontalWalls() {
-        int size = verticalWalls.size();
+        int size = verticalWallGroupCount;
+        if (size < 2) return;
+        Segment previousWall = verticalWalls.get(getWallGroupEnd(size - 1) - 1);
         for (int i = 0; i < size; i++) {
-            List<Segment> borderWalls = verticalWalls.get(i);
-            for (int j = 0; j < borderWalls.size(); j++) {
-                Segment wall = borderWalls.get(j);
-                Segment previousWall;
-                if (j == 0) {
-                    int k = (size + i - 1) % size;
-                    List<Segment> previousBorderWalls = verticalWalls.get(k);
-                    if (k == i) return;
-                    previousWall = previousBorderWalls.get(previousBorderWalls.size() - 1);
+            int groupStart = verticalWallGroups[i];
+            int groupEnd = getWallGroupEnd(i);
+            for (int j = groupStart; j < groupEnd; j++) {
+                Segment wall = verticalWalls.get(j);
+                if (j == groupStart) {
                     generateCornerBuilding(wall, previousWall);
                 } else {
-                    previousWall = borderWalls.get(j - 1);
                     generateDefaultBuilding(wall, previousWall);
                 }
+                previousWall = wall;
             }
         }
     }
@@ -146,16 +179,16 @@ public class Quarter {
         }
 
         if (!buildingsVerticalWalls.isEmpty()) {
-            Segment previousBuildingWall = buildingsVerticalWalls.get(buildingsVerticalWalls.size() - 1);
-            if (previousBuildingWall.isStartPoint(previousWall.getStartPoint())) {
-                double diff = previousBuildingWall.length() - lengthWallPrevious.length();
+            int previousBuildingWall = buildingsVerticalWalls.size() - 1;
+            if (buildingsVerticalWalls.isStartPoint(previousBuildingWall, previousWall.getX1(), previousWall.getY1())) {
+                double diff = buildingsVerticalWalls.length(previousBuildingWall) - lengthWallPrevious.length();
                 if (diff > 0 && diff < MIN_WALL_LENGTH * 0.7) {
-                    vertex1 = previousBuildingWall.getEndPoint();
+                    vertex1 = buildingsVerticalWalls.getEndPoint(previousBuildingWall);
                     Segment borderParallel = wall.getPerpendicular(wall.getX1(), wall.getY1(), -MAX_LENGTH);
                     Segment wallParallel = wall.getParallel(vertex1.x, vertex1.y, -MAX_LENGTH);
                     Point intersection = borderParallel.getIntersection(wallParallel);
                     if (intersection == null) {
-                        System.out.println("AAAAAA");
+                        metrics.increment(GenerationMetrics.Counter.SKIPPED_BUILDINGS);
                         return;
                     }
                     wall = wall.getParallel(intersection.x, intersection.y);
@@ -163,9 +196,9 @@ public class Quarter {
             }
         }
 
-        Point vertex2 = previousWall.getPointOnSegment(Math.random() * (MAX_BORDER_WALL_OFFSET));
+        Point vertex2 = previousWall.getPointOnSegment(randomizer.nextDouble() * (MAX_BORDER_WALL_OFFSET));
         Segment offset = previousWall.getPerpendicular(vertex2.x, vertex2.y, -MAX_LENGTH);
-        Point vertex4 = wall.getPointOnSegment(Math.random() * MAX_BORDER_WALL_OFFSET);
+        Point vertex4 = wall.getPointOnSegment(randomizer.nextDouble() * MAX_BORDER_WALL_OFFSET);
         Segment offsetPrevious = wall.getPerpendicular(vertex4.x, vertex4.y, MAX_LENGTH);
         Point vertex3 = offset.getIntersection(offsetPrevious);
 
@@ -177,14 +210,14 @@ public class Quarter {
         vertexes = filterVertices(vertexes);
 
         buildings.add(new Building(colour, vertexes));
-        buildingsVerticalWalls.add(new Segment(previousWall.getStartPoint(), vertex1));
-        buildingsVerticalWalls.add(new Segment(wall.getStartPoint(), vertex1));
+        buildingsVerticalWalls.add(previousWall.getX1(), previousWall.getY1(), vertex1.x, vertex1.y);
+        buildingsVerticalWalls.add(wall.getX1(), wall.getY1(), vertex1.x, vertex1.y);
     }
 
     private void generateDefaultBuilding(Segment wall, Segment previousWall) {
         Segment lengthWall;
 
-        double offset = Math.random() * MAX_BORDER_WALL_OFFSET;
+        double offset = randomizer.nextDouble() * MAX_BORDER_WALL_OFFSET;
 
         lengthWall = wall.getParallel(wall.getX1(), wall.getY1(), offset);
         Point vertex4 = new Point(lengthWall.getX2(), lengthWall.getY2());
@@ -194,18 +227,19 @@ public class Quarter {
 
         Segment offsetWall = new Segment(vertex3, vertex4);
         double width = vertex3.distance(vertex4);
-        double wallLength = Randomizer.randomAverageMinMax(width, width * WALL_TO_WALL_RANGE, MIN_WALL_LENGTH, MAX_WALL_LENGTH);
+        double wallLength = randomizer.randomAverageMinMax(width, width * WALL_TO_WALL_RANGE, MIN_WALL_LENGTH, MAX_WALL_LENGTH);
 
         List<Point> vertexes = new ArrayList<>();
         Point vertex1;
         Point vertex2;
 
         lengthWall = previousWall.getParallel(previousWall.getX1(), previousWall.getY1(), wallLength);
-        Segment intersectedWall = lengthWall.getIntersectedExtendedSegment(buildingsVerticalWalls);
-        if (intersectedWall != null && !Double.isNaN(lengthWall.getIntersection(intersectedWall).x)) {
-            vertex2 = lengthWall.getIntersection(intersectedWall);
+        int intersectedWall = buildingsVerticalWalls.findIntersectedExtended(lengthWall);
+        Point intersection = getIntersection(lengthWall, intersectedWall);
+        if (intersection != null && !Double.isNaN(intersection.x)) {
+            vertex2 = intersection;
 
-            vertex1 = intersectedWall.getEndPoint();
+            vertex1 = buildingsVerticalWalls.getEndPoint(intersectedWall);
             double length = offsetWall.getDistanceToPoint(vertex1);
             lengthWall = wall.getParallel(wall.getX1(), wall.getY1(), length);
 
@@ -213,11 +247,12 @@ public class Quarter {
             vertexes.add(vertex5);
         } else {
             lengthWall = wall.getParallel(wall.getX1(), wall.getY1(), wallLength);
-            intersectedWall = lengthWall.getIntersectedExtendedSegment(buildingsVerticalWalls);
-            if (intersectedWall != null && !Double.isNaN(lengthWall.getIntersection(intersectedWall).x)) {
-                Point vertex5 = lengthWall.getIntersection(intersectedWall);
+            intersectedWall = buildingsVerticalWalls.findIntersectedExtended(lengthWall);
+            intersection = getIntersection(lengthWall, intersectedWall);
+            if (intersection != null && !Double.isNaN(intersection.x)) {
+                Point vertex5 = intersection;
 
-                vertex2 = intersectedWall.getEndPoint();
+                vertex2 = buildingsVerticalWalls.getEndPoint(intersectedWall);
                 double length = offsetWall.getDistanceToPoint(vertex2);
                 lengthWall = wall.getParallel(wall.getX1(), wall.getY1(), length);
 
@@ -238,8 +273,8 @@ public class Quarter {
         vertexes = filterVertices(vertexes);
 
         buildings.add(new Building(colour, vertexes));
-        buildingsVerticalWalls.add(new Segment(previousWall.getStartPoint(), vertex2));
-        buildingsVerticalWalls.add(new Segment(wall.getStartPoint(), vertex1));
+        buildingsVerticalWalls.add(previousWall.getX1(), previousWall.getY1(), vertex2.x, vertex2.y);
+        buildingsVerticalWalls.add(wall.getX1(), wall.getY1(), vertex1.x, vertex1.y);
     }
 
     private void generateCornerPentagon(Segment wall, Segment previousWall, double lengthToIntersection1, double lengthToIntersection2) {
@@ -247,19 +282,19 @@ public class Quarter {
 
 //        double maxLength = WALL_LENGTH_RANGE * 0.75;
 
-        double length1 = Randomizer.randomAverageMinMax(AVG_WALL_LENGTH, WALL_LENGTH_RANGE, MIN_WALL_LENGTH,
+        double length1 = randomizer.randomAverageMinMax(AVG_WALL_LENGTH, WALL_LENGTH_RANGE, MIN_WALL_LENGTH,
                 Math.min(MAX_WALL_LENGTH, lengthToIntersection1));
         Segment lengthWall1 = wall.getParallel(wall.getX1(), wall.getY1(), length1);
         Point vertex1 = new Point(lengthWall1.getX2(), lengthWall1.getY2());
 
-        double length2 = Randomizer.randomAverageMinMax(AVG_WALL_LENGTH, WALL_LENGTH_RANGE, MIN_WALL_LENGTH,
+        double length2 = randomizer.randomAverageMinMax(AVG_WALL_LENGTH, WALL_LENGTH_RANGE, MIN_WALL_LENGTH,
                 Math.min(MAX_WALL_LENGTH, lengthToIntersection2));
         Segment lengthWall2 = previousWall.getParallel(previousWall.getX1(), previousWall.getY1(), length2);
         Point vertex2 = new Point(lengthWall2.getX2(), lengthWall2.getY2());
 
-        Point vertex3 = previousWall.getPointOnSegment(Math.random() * MAX_BORDER_WALL_OFFSET);
+        Point vertex3 = previousWall.getPointOnSegment(randomizer.nextDouble() * MAX_BORDER_WALL_OFFSET);
         Segment offset = previousWall.getPerpendicular(vertex3.x, vertex3.y, -MAX_LENGTH);
-        Point vertex5 = wall.getPointOnSegment(Math.random() * MAX_BORDER_WALL_OFFSET);
+        Point vertex5 = wall.getPointOnSegment(randomizer.nextDouble() * MAX_BORDER_WALL_OFFSET);
         Segment offsetPrevious = wall.getPerpendicular(vertex5.x, vertex5.y, MAX_LENGTH);
         Point vertex4 = offset.getIntersection(offsetPrevious);
 
@@ -272,12 +307,19 @@ public class Quarter {
         vertexes = filterVertices(vertexes);
 
         buildings.add(new Building(colour, vertexes));
-        buildingsVerticalWalls.add(new Segment(previousWall.getStartPoint(), vertex2));
-        buildingsVerticalWalls.add(new Segment(wall.getStartPoint(), vertex1));
+        buildingsVerticalWalls.add(previousWall.getX1(), previousWall.getY1(), vertex2.x, vertex2.y);
+        buildingsVerticalWalls.add(wall.getX1(), wall.getY1(), vertex1.x, vertex1.y);
+    }
+
+    // where the wall meets building wall id (from findIntersectedExtended), or null for id -1
+    private Point getIntersection(Segment wall, int id) {
+        return id == -1 ? null : buildingsVerticalWalls.getIntersection(wall, id);
     }
 
     private List<Point> filterVertices(List<Point> vertices) {
-        return vertices.stream().filter(v -> !(v == null)).filter(v -> !v.isNan()).toList();
+        List<Point> filtered = vertices.stream().filter(v -> !(v == null)).filter(v -> !v.isNan()).toList();
+        metrics.add(GenerationMetrics.Counter.FILTERED_VERTICES, vertices.size() - filtered.size());
+        return filtered;
     }
 
     public boolean isNeighbour(Quarter quarter) {
@@ -296,6 +338,35 @@ public class Quarter {
         this.colour = colour;
     }
 
+    public void setMetrics(GenerationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setRandomizer(Randomizer randomizer) {
+        this.randomizer = randomizer;
+    }
+
+    // moves every border end lying at "from" and splits a border running through it; true if the outline changed
+    public boolean moveVertex(Point from, Point to) {
+        boolean moved = false;
+        List<Segment> movedBorders = new ArrayList<>(borders.length + 1);
+        for (Segment border : borders) {
+            List<Segment> split = border.getSplitAtMovedPoint(from, to);
+            if (split != null) {
+                movedBorders.addAll(split);
+                moved = true;
+                continue;
+            }
+            Segment movedBorder = border.getWithMovedPoint(from, to);
+            moved |= movedBorder != border;
+            movedBorders.add(movedBorder);
+        }
+        if (moved) {
+            borders = movedBorders.toArray(new Segment[0]);
+        }
+        return moved;
+    }
+
     public Segment[] getBorders() {
         return borders;
     }
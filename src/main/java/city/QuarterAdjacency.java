@@ -0,0 +1,86 @@
+package city;
+
+import geometry.Segment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Which quarters share a border. Built once from hashed border keys: a border is keyed by its two endpoints rounded
+// to 0.1 (the tolerance of Segment.equals), independent of its direction, so two quarters are neighbours when
+// the same road segment appears in both of their outlines.
+public class QuarterAdjacency {
+
+    private static final double KEY_PRECISION = 10;
+
+    private final int[][] neighbours;
+
+    private record BorderKey(long x1, long y1, long x2, long y2) {
+
+        static BorderKey of(Segment segment) {
+            long x1 = Math.round(segment.getX1() * KEY_PRECISION);
+            long y1 = Math.round(segment.getY1() * KEY_PRECISION);
+            long x2 = Math.round(segment.getX2() * KEY_PRECISION);
+            long y2 = Math.round(segment.getY2() * KEY_PRECISION);
+            if (x1 < x2 || (x1 == x2 && y1 <= y2)) {
+                return new BorderKey(x1, y1, x2, y2);
+            }
+            return new BorderKey(x2, y2, x1, y1);
+        }
+    }
+
+    public QuarterAdjacency(List<Quarter> quarters) {
+        Map<BorderKey, List<Integer>> owners = new HashMap<>();
+        for (int i = 0; i < quarters.size(); i++) {
+            for (Segment border : quarters.get(i).getBorders()) {
+                List<Integer> borderOwners = owners.computeIfAbsent(BorderKey.of(border), k -> new ArrayList<>(2));
+                if (!borderOwners.contains(i)) {
+                    borderOwners.add(i);
+                }
+            }
+        }
+
+        int[][] found = new int[quarters.size()][];
+        int[] sizes = new int[quarters.size()];
+        for (int i = 0; i < found.length; i++) {
+            found[i] = new int[4];
+        }
+        for (List<Integer> borderOwners : owners.values()) {
+            for (int a : borderOwners) {
+                for (int b : borderOwners) {
+                    if (a != b && !contains(found[a], sizes[a], b)) {
+                        if (sizes[a] == found[a].length) {
+                            found[a] = Arrays.copyOf(found[a], sizes[a] * 2);
+                        }
+                        found[a][sizes[a]++] = b;
+                    }
+                }
+            }
+        }
+
+        neighbours = new int[found.length][];
+        for (int i = 0; i < found.length; i++) {
+            neighbours[i] = Arrays.copyOf(found[i], sizes[i]);
+            Arrays.sort(neighbours[i]);
+        }
+    }
+
+    private static boolean contains(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int[] getNeighbours(int quarter) {
+        return neighbours[quarter];
+    }
+
+    public int size() {
+        return neighbours.length;
+    }
+}
@@ -0,0 +1,18 @@
+package city;
+
+import geometry.Segment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The road graph of a city before colouring: every road edge and the outline of every quarter
+public record RoadNetwork(List<Segment> edges, List<List<Segment>> quarterBorders) {
+
+    public static RoadNetwork of(Graph graph, List<Segment> edges) {
+        List<List<Segment>> quarterBorders = new ArrayList<>();
+        for (Quarter quarter : graph.getQuarters()) {
+            quarterBorders.add(List.of(quarter.getBorders()));
+        }
+        return new RoadNetwork(edges, quarterBorders);
+    }
+}
@@ -0,0 +1,28 @@
+package city;
+
+public class Shapes {
+
+    public static final String[] NAMES = {"square", "rhombus", "cross"};
+
+    private Shapes() {
+    }
+
+    public static double[][] getMultipliers(String shape) {
+        double[][] squareMultipliers = {{1.0, 0.0}, {0.0, 1.0}, {-1.0, 0.0}, {0.0, -1.0}};
+        double[][] rhombusMultipliers = {{-0.45, -0.9}, {0.45, -0.9}, {0.45, 0.9}, {-0.45, 0.9}};
+        double[][] crossMultipliers = {
+                {0.0, -1.0}, {-1.0, 0.0},
+                {0.0, -1.0}, {1.0, 0},
+                {0.0, -1.0}, {1.0, 0.0},
+                {0.0, 1.0}, {1.0, 0.0},
+                {0.0, 1.0}, {-1.0, 0.0},
+                {0.0, 1.0}, {-1.0, 0.0}};
+
+        return switch (shape) {
+//            case ("square") -> squareMultipliers;
+            case ("rhombus") -> rhombusMultipliers;
+            case ("cross") -> crossMultipliers;
+            default -> squareMultipliers;
+        };
+    }
+}
@@ -0,0 +1,117 @@
+package city;
+
+import geometry.Randomizer;
+import geometry.Segment;
+import metrics.GenerationMetrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+// Generates a region of columns x rows square tiles one tile at a time. Neighbouring tiles share their seam roads:
+// a seam is generated from its own seed, so both tiles rebuild exactly the same segments and nothing has to be kept
+// between tiles. Peak memory therefore depends on the tile size, not on the size of the region.
+public class TiledCity {
+
+    private static final long HORIZONTAL_SEAM = 1;
+    private static final long VERTICAL_SEAM = 2;
+    private static final long TILE = 3;
+
+    private final double startX;
+    private final double startY;
+    private final double tileSize;
+    private final int columns;
+    private final int rows;
+    private final long seed;
+    private final GenerationMetrics metrics = new GenerationMetrics();
+
+    public interface TileOutput {
+        // receives the buildings of every quarter of the tile while it is generated
+        Consumer<List<Building>> beginTile(int column, int row);
+
+        // called once the tile is complete; the city is dropped afterwards
+        void endTile(int column, int row, City city);
+    }
+
+    public TiledCity(double startX, double startY, double tileSize, int columns, int rows, long seed) {
+        this.startX = startX;
+        this.startY = startY;
+        this.tileSize = tileSize;
+        this.columns = columns;
+        this.rows = rows;
+        this.seed = seed;
+    }
+
+    public void generate(Map<String, Double> coloringConfig, ExecutorService executor, TileOutput output) {
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                City city = new City(new Randomizer(mix(TILE, column, row)), executor);
+                city.setMetrics(metrics);
+                city.generateCity(getTileBorders(column, row), coloringConfig, output.beginTile(column, row));
+                output.endTile(column, row, city);
+            }
+        }
+    }
+
+    // clockwise outline of the tile, in the same order as the "square" shape: top, right, bottom, left
+    List<Segment> getTileBorders(int column, int row) {
+        List<Segment> borders = new ArrayList<>();
+        borders.addAll(getHorizontalSeam(column, row));
+        borders.addAll(getVerticalSeam(column + 1, row));
+        borders.addAll(reverse(getHorizontalSeam(column, row + 1)));
+        borders.addAll(reverse(getVerticalSeam(column, row)));
+        return borders;
+    }
+
+    // seam from corner (column, row) to corner (column + 1, row)
+    private List<Segment> getHorizontalSeam(int column, int row) {
+        Randomizer randomizer = new Randomizer(mix(HORIZONTAL_SEAM, column, row));
+        return new City().generateSide(getCornerX(column), getCornerY(row), 1.0, 0.0,
+                getCornerX(column + 1), getCornerY(row), randomizer);
+    }
+
+    // seam from corner (column, row) to corner (column, row + 1)
+    private List<Segment> getVerticalSeam(int column, int row) {
+        Randomizer randomizer = new Randomizer(mix(VERTICAL_SEAM, column, row));
+        return new City().generateSide(getCornerX(column), getCornerY(row), 0.0, 1.0,
+                getCornerX(column), getCornerY(row + 1), randomizer);
+    }
+
+    private double getCornerX(int column) {
+        return startX + column * tileSize;
+    }
+
+    private double getCornerY(int row) {
+        return startY + row * tileSize;
+    }
+
+    private static List<Segment> reverse(List<Segment> segments) {
+        List<Segment> reversed = new ArrayList<>(segments.size());
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            reversed.add(segments.get(i).getReversed());
+        }
+        return reversed;
+    }
+
+    private long mix(long kind, int column, int row) {
+        long hash = seed;
+        hash = hash * 0x9E3779B97F4A7C15L + kind;
+        hash = hash * 0x9E3779B97F4A7C15L + column;
+        hash = hash * 0x9E3779B97F4A7C15L + row;
+        return hash;
+    }
+
+    public GenerationMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,64 @@
+package geometry;
+
+// Geometry on plain coordinates, for inner loops that should not allocate Points or Segments.
+// Formulas keep the operation order of the Segment methods built on them, so both give bit-identical results.
+public final class GeometryKernel {
+
+    public static final double NO_INTERSECTION = -1;
+
+    private GeometryKernel() {
+    }
+
+    public static double length(double dx, double dy) {
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    public static double distance(double x1, double y1, double x2, double y2) {
+        return length(x2 - x1, y2 - y1);
+    }
+
+    // cosine of the angle between two directions with known lengths
+    public static double angleCos(double dx1, double dy1, double length1, double dx2, double dy2, double length2) {
+        return (dx1 * dx2 + dy1 * dy2) / (length1 * length2);
+    }
+
+    public static boolean boxesOverlap(double minX1, double minY1, double maxX1, double maxY1,
+                                       double minX2, double minY2, double maxX2, double maxY2) {
+        return minX1 <= maxX2 && minX2 <= maxX1 && minY1 <= maxY2 && minY2 <= maxY1;
+    }
+
+    // position of the intersection along the second segment (0 at its start, 1 at its end), or NO_INTERSECTION
+    public static double intersectionParameter(double x1, double y1, double x2, double y2,
+                                               double otherX1, double otherY1, double otherX2, double otherY2) {
+        double v = x2 - x1;
+        double w = y2 - y1;
+        double v2 = otherX2 - otherX1;
+        double w2 = otherY2 - otherY1;
+
+        double t2 = (-w * otherX1 + w * x1 + v * otherY1 - v * y1) / (w * v2 - v * w2);
+        double t = (otherX1 - x1 + v2 * t2) / v;
+
+        if (t < 0 || t > 1 || t2 < 0 || t2 > 1) return NO_INTERSECTION;
+
+        return t2;
+    }
+
+    // intersectionParameter with a bounding box check first: segments whose boxes are apart cannot meet
+    public static double intersectionParameterBounded(double x1, double y1, double x2, double y2,
+                                                      double otherX1, double otherY1, double otherX2, double otherY2) {
+        if (!boxesOverlap(Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2),
+                Math.min(otherX1, otherX2), Math.min(otherY1, otherY2), Math.max(otherX1, otherX2), Math.max(otherY1, otherY2))) {
+            return NO_INTERSECTION;
+        }
+        return intersectionParameter(x1, y1, x2, y2, otherX1, otherY1, otherX2, otherY2);
+    }
+
+    // the point lies on the segment (of the given length) when the detour through it is at most 0.05
+    public static boolean isOnSegment(double x1, double y1, double x2, double y2, double length, double x, double y) {
+        return distance(x1, y1, x, y) + distance(x, y, x2, y2) - length <= 0.05;
+    }
+
+    public static boolean isClose(double x1, double y1, double x2, double y2, double tolerance) {
+        return (Math.abs(x2 - x1) < tolerance) && (Math.abs(y2 - y1) < tolerance);
+    }
+}
@@ -13,11 +13,11 @@ public class Point {
 
 
     public double distance(Double pointX, double pointY) {
-        return Math.sqrt(Math.pow((x - pointX), 2) + Math.pow((y - pointY), 2));
+        return GeometryKernel.distance(pointX, pointY, x, y);
     }
 
     public double distance(Point point) {
-        return Math.sqrt(Math.pow((x - point.x), 2) + Math.pow((y - point.y), 2));
+        return GeometryKernel.distance(point.x, point.y, x, y);
     }
 
     public boolean isNan() {
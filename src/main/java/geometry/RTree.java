@@ -0,0 +1,203 @@
+package geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Static R-tree packed with Sort-Tile-Recursive: items are sorted into vertical slices by x and every slice by y,
+// then cut into nodes of NODE_SIZE; upper levels are packed the same way from the nodes below.
+// Built once over finished results, it answers box queries and nearest lookups in logarithmic time.
+public class RTree<T> {
+
+    public interface Bounds<T> {
+        // {minX, minY, maxX, maxY}
+        double[] of(T item);
+    }
+
+    public interface Distance<T> {
+        double to(T item, double x, double y);
+    }
+
+    private static final int NODE_SIZE = 16;
+
+    private final Object[] items;
+    private final double[] itemBounds;
+    private final Distance<T> distance;
+    // levels[0] are the leaves, whose children are items; the last level holds only the root
+    private final List<Level> levels;
+
+    private static class Level {
+        final double[] bounds;
+        final int[] childStart;
+        final int[] childEnd;
+
+        Level(int size) {
+            bounds = new double[size * 4];
+            childStart = new int[size];
+            childEnd = new int[size];
+        }
+
+        int size() {
+            return childStart.length;
+        }
+    }
+
+    // for trees that only answer box queries
+    public RTree(List<T> items, Bounds<T> bounds) {
+        this(items, bounds, null);
+    }
+
+    public RTree(List<T> items, Bounds<T> bounds, Distance<T> distance) {
+        this.distance = distance;
+        int size = items.size();
+
+        double[] unsortedBounds = new double[size * 4];
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(bounds.of(items.get(i)), 0, unsortedBounds, i * 4, 4);
+        }
+        int[] order = sortTileRecursive(unsortedBounds, size);
+        this.items = new Object[size];
+        this.itemBounds = new double[size * 4];
+        for (int i = 0; i < size; i++) {
+            this.items[i] = items.get(order[i]);
+            System.arraycopy(unsortedBounds, order[i] * 4, itemBounds, i * 4, 4);
+        }
+
+        levels = new ArrayList<>();
+        Level level = pack(itemBounds, size);
+        levels.add(level);
+        while (level.size() > 1) {
+            // the nodes of the level below are reordered first, so every parent covers a run of them
+            int[] nodeOrder = sortTileRecursive(level.bounds, level.size());
+            level = reorder(level, nodeOrder);
+            levels.set(levels.size() - 1, level);
+            level = pack(level.bounds, level.size());
+            levels.add(level);
+        }
+    }
+
+    private static int[] sortTileRecursive(double[] bounds, int size) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> bounds[i * 4] + bounds[i * 4 + 2]));
+
+        int nodes = (size + NODE_SIZE - 1) / NODE_SIZE;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int sliceSize = slices * NODE_SIZE;
+        for (int start = 0; start < size; start += sliceSize) {
+            Arrays.sort(order, start, Math.min(start + sliceSize, size),
+                    Comparator.comparingDouble(i -> bounds[i * 4 + 1] + bounds[i * 4 + 3]));
+        }
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    private static Level reorder(Level level, int[] order) {
+        Level reordered = new Level(level.size());
+        for (int i = 0; i < order.length; i++) {
+            System.arraycopy(level.bounds, order[i] * 4, reordered.bounds, i * 4, 4);
+            reordered.childStart[i] = level.childStart[order[i]];
+            reordered.childEnd[i] = level.childEnd[order[i]];
+        }
+        return reordered;
+    }
+
+    // groups consecutive children into nodes of NODE_SIZE; an empty tree gets one empty root
+    private static Level pack(double[] childBounds, int childCount) {
+        Level level = new Level(Math.max((childCount + NODE_SIZE - 1) / NODE_SIZE, 1));
+        for (int node = 0; node < level.size(); node++) {
+            int start = node * NODE_SIZE;
+            int end = Math.min(start + NODE_SIZE, childCount);
+            level.childStart[node] = start;
+            level.childEnd[node] = end;
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int child = start; child < end; child++) {
+                minX = Math.min(minX, childBounds[child * 4]);
+                minY = Math.min(minY, childBounds[child * 4 + 1]);
+                maxX = Math.max(maxX, childBounds[child * 4 + 2]);
+                maxY = Math.max(maxY, childBounds[child * 4 + 3]);
+            }
+            level.bounds[node * 4] = minX;
+            level.bounds[node * 4 + 1] = minY;
+            level.bounds[node * 4 + 2] = maxX;
+            level.bounds[node * 4 + 3] = maxY;
+        }
+        return level;
+    }
+
+    // every item whose bounding box overlaps the box
+    public List<T> query(double minX, double minY, double maxX, double maxY) {
+        List<T> result = new ArrayList<>();
+        query(levels.size() - 1, 0, minX, minY, maxX, maxY, result);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void query(int levelIndex, int node, double minX, double minY, double maxX, double maxY, List<T> result) {
+        Level level = levels.get(levelIndex);
+        if (!overlaps(level.bounds, node, minX, minY, maxX, maxY)) {
+            return;
+        }
+        for (int child = level.childStart[node]; child < level.childEnd[node]; child++) {
+            if (levelIndex > 0) {
+                query(levelIndex - 1, child, minX, minY, maxX, maxY, result);
+            } else if (overlaps(itemBounds, child, minX, minY, maxX, maxY)) {
+                result.add((T) items[child]);
+            }
+        }
+    }
+
+    public T nearest(double x, double y) {
+        List<T> nearest = nearest(x, y, 1);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    // the count items closest to the point, closest first: best-first search over nodes ordered by box distance
+    @SuppressWarnings("unchecked")
+    public List<T> nearest(double x, double y, int count) {
+        // entry: {distance, level (-1 for an item), index}
+        PriorityQueue<double[]> queue = new PriorityQueue<>(Comparator.comparingDouble(entry -> entry[0]));
+        int root = levels.size() - 1;
+        queue.add(new double[]{boxDistance(levels.get(root).bounds, 0, x, y), root, 0});
+
+        List<T> result = new ArrayList<>();
+        while (!queue.isEmpty() && result.size() < count) {
+            double[] entry = queue.poll();
+            int levelIndex = (int) entry[1];
+            int index = (int) entry[2];
+            if (levelIndex < 0) {
+                result.add((T) items[index]);
+                continue;
+            }
+            Level level = levels.get(levelIndex);
+            for (int child = level.childStart[index]; child < level.childEnd[index]; child++) {
+                if (levelIndex > 0) {
+                    queue.add(new double[]{boxDistance(levels.get(levelIndex - 1).bounds, child, x, y), levelIndex - 1, child});
+                } else {
+                    queue.add(new double[]{distance.to((T) items[child], x, y), -1, child});
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    private static boolean overlaps(double[] bounds, int i, double minX, double minY, double maxX, double maxY) {
+        return bounds[i * 4] <= maxX && bounds[i * 4 + 2] >= minX && bounds[i * 4 + 1] <= maxY && bounds[i * 4 + 3] >= minY;
+    }
+
+    private static double boxDistance(double[] bounds, int i, double x, double y) {
+        double dx = Math.max(Math.max(bounds[i * 4] - x, 0), x - bounds[i * 4 + 2]);
+        double dy = Math.max(Math.max(bounds[i * 4 + 1] - y, 0), y - bounds[i * 4 + 3]);
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+}
@@ -1,10 +1,40 @@
 package geometry;
 
-import java.util.Random;
+import java.util.SplittableRandom;
 
+// Not thread-safe: every thread (or quarter) should work with its own instance obtained through split()
 public class Randomizer {
-    public static double nextGaussian() {
-        Random random = new Random();
+    private final SplittableRandom random;
+
+    public Randomizer() {
+        this(new SplittableRandom());
+    }
+
+    public Randomizer(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private Randomizer(SplittableRandom random) {
+        this.random = random;
+    }
+
+    public Randomizer split() {
+        return new Randomizer(random.split());
+    }
+
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    public double nextGaussian() {
         double nextGaussian = random.nextGaussian();
         if (Math.abs(nextGaussian) > 1) {
             while (Math.abs(nextGaussian) > 1) {
@@ -14,16 +44,16 @@ public class Randomizer {
         return nextGaussian;
     }
 
-    public static double randomAverage(double average, double range) {
+    public double randomAverage(double average, double range) {
         return average + nextGaussian() * range;
     }
 
-    public static double randomMinMax(double min, double max) {
-        return min + Math.random() * (max - min);
+    public double randomMinMax(double min, double max) {
+        return min + random.nextDouble() * (max - min);
     }
 
 
-    public static double randomAverageMinMax(double average, double range, double min, double max) {
+    public double randomAverageMinMax(double average, double range, double min, double max) {
         return Math.min(Math.max(average + nextGaussian() * range, min), max);
     }
 }
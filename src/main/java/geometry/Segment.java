@@ -1,6 +1,5 @@
 package geometry;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 
@@ -11,42 +10,63 @@ public class Segment {
     private final double x2;
     private final double y2;
 
+    // derived once: segments are immutable and these are needed again and again in the generation loops
+    private final double length;
+    private final double unitX;
+    private final double unitY;
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
     public Segment(double x1, double y1, double x2, double y2) {
         this.x1 = x1;
         this.y1 = y1;
         this.x2 = x2;
         this.y2 = y2;
+        length = GeometryKernel.length(x2 - x1, y2 - y1);
+        unitX = (x2 - x1) / length;
+        unitY = (y2 - y1) / length;
+        minX = Math.min(x1, x2);
+        minY = Math.min(y1, y2);
+        maxX = Math.max(x1, x2);
+        maxY = Math.max(y1, y2);
     }
 
     public Segment(Point point1, Point point2) {
-        this.x1 = point1.x;
-        this.y1 = point1.y;
-        this.x2 = point2.x;
-        this.y2 = point2.y;
+        this(point1.x, point1.y, point2.x, point2.y);
     }
 
     public double length() {
-        return Math.sqrt(Math.pow((x2 - x1), 2) + Math.pow((y2 - y1), 2));
+        return length;
     }
 
     public Segment getPerpendicular(double x, double y) {
-        double newX = x - (y2 - y1) / this.length();
-        double newY = y + (x2 - x1) / this.length();
+        double newX = x - unitY;
+        double newY = y + unitX;
         return new Segment(x, y, newX, newY);
     }
 
     public Segment getPerpendicular(double x, double y, double length) {
-        double newX = x - (y2 - y1) / this.length() * length;
-        double newY = y + (x2 - x1) / this.length() * length;
-        return new Segment(x, y, newX, newY);
+        return new Segment(x, y, getPerpendicularEndX(x, length), getPerpendicularEndY(y, length));
+    }
+
+    // end of getPerpendicular(x, y, length), for callers that only need the coordinates
+    public double getPerpendicularEndX(double x, double length) {
+        return x - unitY * length;
+    }
+
+    public double getPerpendicularEndY(double y, double length) {
+        return y + unitX * length;
     }
 
-    public Segment getTiltedPerpendicular(double x, double y, double length, double yTiltPercent, double xTiltPercent) {
-        double perpendicularX = x - (y2 - y1) / this.length() * length;
-        double perpendicularY = y + (x2 - x1) / this.length() * length;
+    public Segment getTiltedPerpendicular(double x, double y, double length, double yTiltPercent, double xTiltPercent,
+                                          Randomizer randomizer) {
+        double perpendicularX = x - unitY * length;
+        double perpendicularY = y + unitX * length;
 
-        double newX = perpendicularX + ((Math.random() - 0.5) * xTiltPercent * 2 * length);
-        double newY = perpendicularY + ((Math.random() - 0.5) * yTiltPercent * 2 * length);
+        double newX = perpendicularX + ((randomizer.nextDouble() - 0.5) * xTiltPercent * 2 * length);
+        double newY = perpendicularY + ((randomizer.nextDouble() - 0.5) * yTiltPercent * 2 * length);
 
         return new Segment(x, y, newX, newY);
     }
@@ -57,16 +77,24 @@ public class Segment {
         return new Segment(x, y, newX, newY);
     }
 
+    // the direction is taken from the translated end rather than the cached unit vector: the rounding differs
     public Segment getParallel(double x, double y) {
-        double newX = (x2 - (x1 - x) - x) / this.length() + x;
-        double newY = (y2 - (y1 - y) - y) / this.length() + y;
+        double newX = (x2 - (x1 - x) - x) / length + x;
+        double newY = (y2 - (y1 - y) - y) / length + y;
         return new Segment(x, y, newX, newY);
     }
 
     public Segment getParallel(double x, double y, double length) {
-        double newX = (x2 - (x1 - x) - x) / this.length() * length + x;
-        double newY = (y2 - (y1 - y) - y) / this.length() * length + y;
-        return new Segment(x, y, newX, newY);
+        return new Segment(x, y, getParallelEndX(x, length), getParallelEndY(y, length));
+    }
+
+    // end of getParallel(x, y, length), for callers that only need the coordinates
+    public double getParallelEndX(double x, double length) {
+        return (x2 - (x1 - x) - x) / this.length * length + x;
+    }
+
+    public double getParallelEndY(double y, double length) {
+        return (y2 - (y1 - y) - y) / this.length * length + y;
     }
 
 //    public Segment getTiltedParallel(double x, double y, double length, double yTiltPercent, double xTiltPercent) {
@@ -88,11 +116,11 @@ public class Segment {
     }
 
     public Segment getTurnedAround() {
-        return getParallel(x1, y1, -this.length());
+        return getParallel(x1, y1, -length);
     }
 
     public boolean intersects(Segment segment) {
-        return getIntersection(segment) != null;
+        return getIntersectionParameter(segment) != GeometryKernel.NO_INTERSECTION;
     }
 
     public boolean intersects(List<Segment> segments) {
@@ -105,15 +133,16 @@ public class Segment {
     }
 
     public boolean intersectsExtended(Segment segment) {
-        if (this.intersects(segment)) {
-            if (this.isStartPoint(segment.getStartPoint()) && this.isEndPoint(segment.getEndPoint())) {
-                return false;
-            }
-            Point intersection = this.getIntersection(segment);
-            return  !this.isStartPoint(intersection) && !this.isEndPoint(intersection) &&
-                    !segment.isStartPoint(intersection) && !segment.isEndPoint(intersection);
+        double t = getIntersectionParameter(segment);
+        if (t == GeometryKernel.NO_INTERSECTION) {
+            return false;
         }
-        return false;
+        if (isStartPoint(segment.x1, segment.y1) && isEndPoint(segment.x2, segment.y2)) {
+            return false;
+        }
+        double x = segment.x1 + (segment.x2 - segment.x1) * t;
+        double y = segment.y1 + (segment.y2 - segment.y1) * t;
+        return !isStartPoint(x, y) && !isEndPoint(x, y) && !segment.isStartPoint(x, y) && !segment.isEndPoint(x, y);
     }
 
     public boolean intersectsExtended(List<Segment> segments) {
@@ -121,20 +150,32 @@ public class Segment {
             return false;
         }
         for (Segment segment : segments) {
-            if (this.intersects(segment)) {
-                Point intersection = this.getIntersection(segment);
-                if (this.isStartPoint(intersection) || this.isEndPoint(intersection) ||
-                        segment.isStartPoint(intersection) || segment.isStartPoint(intersection)) {
-                    continue;
-                }
+            if (crossesExtended(segment)) {
                 return true;
             }
         }
         return false;
     }
 
+    // one step of intersectsExtended(List); the end of the other segment is deliberately not checked
+    private boolean crossesExtended(Segment segment) {
+        double t = getIntersectionParameter(segment);
+        if (t == GeometryKernel.NO_INTERSECTION) {
+            return false;
+        }
+        double x = segment.x1 + (segment.x2 - segment.x1) * t;
+        double y = segment.y1 + (segment.y2 - segment.y1) * t;
+        return !isStartPoint(x, y) && !isEndPoint(x, y) && !segment.isStartPoint(x, y);
+    }
+
+    // same as intersectsExtended(List), without copying the array
     public boolean intersectsExtended(Segment[] segments) {
-        return this.intersectsExtended(Arrays.stream(segments).toList());
+        for (Segment segment : segments) {
+            if (crossesExtended(segment)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     public Segment getIntersectedExtendedSegment(List<Segment> segments) {
@@ -150,29 +191,26 @@ public class Segment {
     }
 
     public Point getIntersection(Segment segment) {
-        double v = x2 - x1;
-        double w = y2 - y1;
-        double v2 = segment.x2 - segment.x1;
-        double w2 = segment.y2 - segment.y1;
-
-        double t2 = (-w * segment.x1 + w * x1 + v * segment.y1 - v * y1) / (w * v2 - v * w2);
-        double t = (segment.x1 - x1 + v2 * t2) / v;
+        double t2 = getIntersectionParameter(segment);
+        if (t2 == GeometryKernel.NO_INTERSECTION) return null;
 
-        if (t < 0 || t > 1 || t2 < 0 || t2 > 1) return null;
+        return new Point(segment.x1 + (segment.x2 - segment.x1) * t2, segment.y1 + (segment.y2 - segment.y1) * t2);
+    }
 
-        return new Point(segment.x1 + v2 * t2, segment.y1 + w2 * t2);
+    // position of the intersection along the other segment, or NO_INTERSECTION; apart bounding boxes never meet
+    private double getIntersectionParameter(Segment segment) {
+        if (!GeometryKernel.boxesOverlap(minX, minY, maxX, maxY, segment.minX, segment.minY, segment.maxX, segment.maxY)) {
+            return GeometryKernel.NO_INTERSECTION;
+        }
+        return GeometryKernel.intersectionParameter(x1, y1, x2, y2, segment.x1, segment.y1, segment.x2, segment.y2);
     }
 
     public boolean isOnSegment(double x, double y) {
-        double distance1 = Math.sqrt(Math.pow((x - x1), 2) + Math.pow((y - y1), 2));
-        double distance2 = Math.sqrt(Math.pow((x2 - x), 2) + Math.pow((y2 - y), 2));
-        return distance1 + distance2 - length() <= 0.05;
+        return GeometryKernel.isOnSegment(x1, y1, x2, y2, length, x, y);
     }
 
     public boolean isOnSegment(Point point) {
-        double distance1 = Math.sqrt(Math.pow((point.x - x1), 2) + Math.pow((point.y - y1), 2));
-        double distance2 = Math.sqrt(Math.pow((x2 - point.x), 2) + Math.pow((y2 - point.y), 2));
-        return distance1 + distance2 - length() <= 0.05;
+        return GeometryKernel.isOnSegment(x1, y1, x2, y2, length, point.x, point.y);
     }
 
     public double getDistanceToPoint(Point point) {
@@ -180,30 +218,27 @@ public class Segment {
     }
 
     public double getDistanceToPoint(double pointX, double pointY) {
-        double distance1 = Math.sqrt(Math.pow((x1 - pointX), 2) + Math.pow((y1 - pointY), 2));
-        double distance2 = Math.sqrt(Math.pow((x2 - pointX), 2) + Math.pow((y2 - pointY), 2));
+        double distance1 = GeometryKernel.distance(pointX, pointY, x1, y1);
+        double distance2 = GeometryKernel.distance(pointX, pointY, x2, y2);
 
         double distance = Math.max(distance1, distance2);
         Segment perpendicular = this.getPerpendicular(pointX, pointY, distance);
         if (this.intersects(perpendicular)) {
             Point intersection = getIntersection(perpendicular);
-            return Math.sqrt(Math.pow((pointX - intersection.x), 2) + Math.pow((pointY - intersection.y), 2));
+            return GeometryKernel.distance(intersection.x, intersection.y, pointX, pointY);
         }
 
         perpendicular = this.getPerpendicular(pointX, pointY, -distance);
         if (this.intersects(perpendicular)) {
             Point intersection = getIntersection(perpendicular);
-            return Math.sqrt(Math.pow((pointX - intersection.x), 2) + Math.pow((pointY - intersection.y), 2));
+            return GeometryKernel.distance(intersection.x, intersection.y, pointX, pointY);
         }
 
         return Math.min(distance1, distance2);
     }
 
     public double getAngleCos(Segment segment) {
-        Segment thisNormalized = this.getTranslation(0, 0);
-        Segment normalized = segment.getTranslation(0, 0);
-        double k = thisNormalized.getX2() * normalized.getX2() + thisNormalized.getY2() * normalized.getY2();
-        return k / (thisNormalized.length() * normalized.length());
+        return GeometryKernel.angleCos(x2 - x1, y2 - y1, length, segment.x2 - segment.x1, segment.y2 - segment.y1, segment.length);
     }
 
     public Segment getAverageSegment(Segment segment) {
@@ -220,11 +255,37 @@ public class Segment {
     }
 
     public boolean isStartPoint(Point point) {
-        return (Math.abs(point.x - x1) < 0.001) && (Math.abs(point.y - y1) < 0.001);
+        return isStartPoint(point.x, point.y);
+    }
+
+    public boolean isStartPoint(double x, double y) {
+        return GeometryKernel.isClose(x1, y1, x, y, 0.001);
     }
 
     public boolean isEndPoint(Point point) {
-        return (Math.abs(point.x - x2) < 0.001) && (Math.abs(point.y - y2) < 0.001);
+        return isEndPoint(point.x, point.y);
+    }
+
+    public boolean isEndPoint(double x, double y) {
+        return GeometryKernel.isClose(x2, y2, x, y, 0.001);
+    }
+
+    // the segment with every end at point "from" moved to "to"; the segment itself when no end is there
+    public Segment getWithMovedPoint(Point from, Point to) {
+        boolean start = isStartPoint(from);
+        boolean end = isEndPoint(from);
+        if (!start && !end) {
+            return this;
+        }
+        return new Segment(start ? to.x : x1, start ? to.y : y1, end ? to.x : x2, end ? to.y : y2);
+    }
+
+    // for "from" inside the segment (a T-junction), the two halves bent to meet at "to"; null when it is not inside
+    public List<Segment> getSplitAtMovedPoint(Point from, Point to) {
+        if (isStartPoint(from) || isEndPoint(from) || !isOnSegment(from)) {
+            return null;
+        }
+        return List.of(new Segment(x1, y1, to.x, to.y), new Segment(to.x, to.y, x2, y2));
     }
 
     public Point getStartPoint() {
@@ -0,0 +1,142 @@
+package geometry;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Uniform grid over segments: each segment is stored in every cell its bounding box touches,
+// so an intersection query only has to look at the segments sharing a cell with the query segment.
+// Coordinates live in a SegmentStore and cells only hold segment ids.
+public class SegmentGrid {
+
+    private static final int MAX_RETAINED_CELLS = 1 << 14;
+
+    private final double cellSize;
+    private final SegmentStore segments;
+    private final Map<Segment, Integer> ids;
+    private final BitSet removed;
+    private final Map<Long, Cell> cells;
+
+    public SegmentGrid(double cellSize) {
+        this.cellSize = cellSize;
+        this.segments = new SegmentStore();
+        this.ids = new IdentityHashMap<>();
+        this.removed = new BitSet();
+        this.cells = new HashMap<>();
+    }
+
+    public SegmentGrid(double cellSize, Collection<Segment> segments) {
+        this(cellSize);
+        addAll(segments);
+    }
+
+    public void add(Segment segment) {
+        int id = segments.add(segment);
+        ids.put(segment, id);
+        int minX = cell(Math.min(segment.getX1(), segment.getX2()));
+        int maxX = cell(Math.max(segment.getX1(), segment.getX2()));
+        int minY = cell(Math.min(segment.getY1(), segment.getY2()));
+        int maxY = cell(Math.max(segment.getY1(), segment.getY2()));
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                cells.computeIfAbsent(key(x, y), k -> new Cell()).add(id);
+            }
+        }
+    }
+
+    public void addAll(Collection<Segment> segments) {
+        for (Segment segment : segments) {
+            add(segment);
+        }
+    }
+
+    public void remove(Segment segment) {
+        Integer id = ids.remove(segment);
+        if (id != null) {
+            removed.set(id);
+        }
+    }
+
+    // same result as segment.intersects(List) over all segments in the grid
+    public boolean intersects(Segment segment) {
+        int minX = cell(Math.min(segment.getX1(), segment.getX2()));
+        int maxX = cell(Math.max(segment.getX1(), segment.getX2()));
+        int minY = cell(Math.min(segment.getY1(), segment.getY2()));
+        int maxY = cell(Math.max(segment.getY1(), segment.getY2()));
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                Cell cell = cells.get(key(x, y));
+                if (cell == null) continue;
+                for (int i = 0; i < cell.size; i++) {
+                    int id = cell.ids[i];
+                    if (!removed.get(id) && segments.intersects(segment, id)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // same result as segment.intersectsExtended(List) over all segments in the grid
+    public boolean intersectsExtended(Segment segment) {
+        int minX = cell(Math.min(segment.getX1(), segment.getX2()));
+        int maxX = cell(Math.max(segment.getX1(), segment.getX2()));
+        int minY = cell(Math.min(segment.getY1(), segment.getY2()));
+        int maxY = cell(Math.max(segment.getY1(), segment.getY2()));
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                Cell cell = cells.get(key(x, y));
+                if (cell == null) continue;
+                for (int i = 0; i < cell.size; i++) {
+                    int id = cell.ids[i];
+                    if (!removed.get(id) && segments.crosses(segment, id)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    // empties the grid for reuse; cells are kept (emptied) unless there are so many that they would pile up
+    public void clear() {
+        segments.clear();
+        ids.clear();
+        removed.clear();
+        if (cells.size() > MAX_RETAINED_CELLS) {
+            cells.clear();
+        } else {
+            for (Cell cell : cells.values()) {
+                cell.size = 0;
+            }
+        }
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    private int cell(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private static class Cell {
+        private int[] ids = new int[4];
+        private int size;
+
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package geometry;
+
+import java.util.Arrays;
+
+// Packed storage of segments addressed by integer ids: segment i occupies coordinates[4 * i .. 4 * i + 3]
+// as x1, y1, x2, y2. Used for generation scratch data instead of keeping Segment objects alive.
+public class SegmentStore {
+
+    private double[] coordinates;
+    private int size;
+
+    public SegmentStore() {
+        this(16);
+    }
+
+    public SegmentStore(int capacity) {
+        coordinates = new double[Math.max(capacity, 1) * 4];
+    }
+
+    public int add(double x1, double y1, double x2, double y2) {
+        if (size * 4 == coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+        }
+        int offset = size * 4;
+        coordinates[offset] = x1;
+        coordinates[offset + 1] = y1;
+        coordinates[offset + 2] = x2;
+        coordinates[offset + 3] = y2;
+        return size++;
+    }
+
+    public int add(Segment segment) {
+        return add(segment.getX1(), segment.getY1(), segment.getX2(), segment.getY2());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public double getX1(int id) {
+        return coordinates[id * 4];
+    }
+
+    public double getY1(int id) {
+        return coordinates[id * 4 + 1];
+    }
+
+    public double getX2(int id) {
+        return coordinates[id * 4 + 2];
+    }
+
+    public double getY2(int id) {
+        return coordinates[id * 4 + 3];
+    }
+
+    // same as get(id).length()
+    public double length(int id) {
+        int offset = id * 4;
+        return GeometryKernel.length(coordinates[offset + 2] - coordinates[offset], coordinates[offset + 3] - coordinates[offset + 1]);
+    }
+
+    // same as get(id).isStartPoint(x, y)
+    public boolean isStartPoint(int id, double x, double y) {
+        return GeometryKernel.isClose(coordinates[id * 4], coordinates[id * 4 + 1], x, y, 0.001);
+    }
+
+    public Point getEndPoint(int id) {
+        return new Point(coordinates[id * 4 + 2], coordinates[id * 4 + 3]);
+    }
+
+    public Segment get(int id) {
+        int offset = id * 4;
+        return new Segment(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2], coordinates[offset + 3]);
+    }
+
+    // same as segment.intersects(get(id))
+    public boolean intersects(Segment segment, int id) {
+        int offset = id * 4;
+        return GeometryKernel.intersectionParameterBounded(segment.getX1(), segment.getY1(), segment.getX2(), segment.getY2(),
+                coordinates[offset], coordinates[offset + 1], coordinates[offset + 2], coordinates[offset + 3])
+                != GeometryKernel.NO_INTERSECTION;
+    }
+
+    // same as segment.getIntersection(get(id))
+    public Point getIntersection(Segment segment, int id) {
+        int offset = id * 4;
+        double x1 = coordinates[offset];
+        double y1 = coordinates[offset + 1];
+        double x2 = coordinates[offset + 2];
+        double y2 = coordinates[offset + 3];
+        double t = GeometryKernel.intersectionParameterBounded(segment.getX1(), segment.getY1(), segment.getX2(), segment.getY2(),
+                x1, y1, x2, y2);
+        if (t == GeometryKernel.NO_INTERSECTION) {
+            return null;
+        }
+        return new Point(x1 + (x2 - x1) * t, y1 + (y2 - y1) * t);
+    }
+
+    // same as one step of segment.intersectsExtended(List) against get(id)
+    public boolean crosses(Segment segment, int id) {
+        int offset = id * 4;
+        double x1 = coordinates[offset];
+        double y1 = coordinates[offset + 1];
+        double x2 = coordinates[offset + 2];
+        double y2 = coordinates[offset + 3];
+        double t = GeometryKernel.intersectionParameterBounded(segment.getX1(), segment.getY1(), segment.getX2(), segment.getY2(),
+                x1, y1, x2, y2);
+        if (t == GeometryKernel.NO_INTERSECTION) {
+            return false;
+        }
+        double x = x1 + (x2 - x1) * t;
+        double y = y1 + (y2 - y1) * t;
+        return !segment.isStartPoint(x, y) && !segment.isEndPoint(x, y) && !GeometryKernel.isClose(x1, y1, x, y, 0.001);
+    }
+
+    // same as segment.intersectsExtended(get(id))
+    public boolean intersectsExtended(Segment segment, int id) {
+        int offset = id * 4;
+        double x1 = coordinates[offset];
+        double y1 = coordinates[offset + 1];
+        double x2 = coordinates[offset + 2];
+        double y2 = coordinates[offset + 3];
+        double t = GeometryKernel.intersectionParameterBounded(segment.getX1(), segment.getY1(), segment.getX2(), segment.getY2(),
+                x1, y1, x2, y2);
+        if (t == GeometryKernel.NO_INTERSECTION) {
+            return false;
+        }
+        if (segment.isStartPoint(x1, y1) && segment.isEndPoint(x2, y2)) {
+            return false;
+        }
+        double x = x1 + (x2 - x1) * t;
+        double y = y1 + (y2 - y1) * t;
+        return !segment.isStartPoint(x, y) && !segment.isEndPoint(x, y) &&
+                !GeometryKernel.isClose(x1, y1, x, y, 0.001) && !GeometryKernel.isClose(x2, y2, x, y, 0.001);
+    }
+
+    // id of the first stored segment for which segment.intersectsExtended holds, or -1
+    public int findIntersectedExtended(Segment segment) {
+        for (int id = 0; id < size; id++) {
+            if (intersectsExtended(segment, id)) {
+                return id;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,39 @@
+package json;
+
+import city.Building;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+// Writes the buildings of one quarter per line, as a compact JSON array, in the order they are given
+public class BuildingsLineWriter implements Closeable {
+
+    private final Writer writer;
+    private final JSONSerializer serializer;
+
+    BuildingsLineWriter(Writer writer, JSONSerializer serializer) {
+        this.writer = writer;
+        this.serializer = serializer;
+    }
+
+    public void write(List<Building> quarterBuildings) {
+        try {
+            // a JsonWriter keeps no buffer of its own, so a fresh one per line writes straight through
+            JSONCodec.writeBuildings(serializer.createWriter(writer), quarterBuildings);
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
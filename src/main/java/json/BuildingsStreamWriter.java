@@ -0,0 +1,41 @@
+package json;
+
+import city.Building;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+// Writes buildings.json one quarter at a time, so the whole city never has to be held for serialization
+public class BuildingsStreamWriter implements Closeable {
+
+    private final JsonWriter writer;
+
+    BuildingsStreamWriter(JsonWriter writer) {
+        this.writer = writer;
+        try {
+            writer.beginArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void write(List<Building> quarterBuildings) {
+        try {
+            JSONCodec.writeBuildings(writer, quarterBuildings);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.endArray();
+            writer.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package json;
+
+import city.Building;
+import com.google.gson.stream.JsonWriter;
+import geometry.Point;
+import geometry.Segment;
+
+import java.io.IOException;
+
+// Hand-written writers producing the same layout Gson used to produce through reflection
+public class JSONCodec {
+
+    private JSONCodec() {
+    }
+
+    public static void writeBuilding(JsonWriter writer, Building building) throws IOException {
+        writer.beginObject();
+        writer.name("color").value(building.color());
+        writer.name("vertexes").beginArray();
+        for (Point vertex : building.vertexes()) {
+            writePoint(writer, vertex);
+        }
+        writer.endArray();
+        writer.endObject();
+    }
+
+    public static void writeBuildings(JsonWriter writer, Iterable<Building> buildings) throws IOException {
+        writer.beginArray();
+        for (Building building : buildings) {
+            writeBuilding(writer, building);
+        }
+        writer.endArray();
+    }
+
+    public static void writePoint(JsonWriter writer, Point point) throws IOException {
+        writer.beginObject();
+        writer.name("x").value(point.x.doubleValue());
+        writer.name("y").value(point.y.doubleValue());
+        writer.endObject();
+    }
+
+    public static void writeSegment(JsonWriter writer, Segment segment) throws IOException {
+        writer.beginObject();
+        writer.name("start").beginArray().value(segment.getX1()).value(segment.getY1()).endArray();
+        writer.name("end").beginArray().value(segment.getX2()).value(segment.getY2()).endArray();
+        writer.endObject();
+    }
+}
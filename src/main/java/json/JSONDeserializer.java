@@ -1,16 +1,27 @@
 package json;
 
+import city.Building;
 import city.CityConfig;
+import city.CityEdit;
 import city.Quarter;
+import city.RoadNetwork;
 import com.google.gson.*;
 import com.google.gson.stream.JsonReader;
+import geometry.Point;
+import geometry.Randomizer;
 import geometry.Segment;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 public class JSONDeserializer {
 
@@ -35,7 +46,11 @@ public class JSONDeserializer {
             for (JsonElement jsonBorder : jsonBorders) {
                 borders.add(context.deserialize(jsonBorder, Segment.class));
             }
-            return new Quarter(borders, color);
+            Quarter quarter = new Quarter(borders, color);
+            if (jsonObject.has("seed")) {
+                quarter.setRandomizer(new Randomizer(jsonObject.get("seed").getAsLong()));
+            }
+            return quarter;
         }
     }
 
@@ -51,26 +66,148 @@ public class JSONDeserializer {
         }
     }
 
+    // files ending in .gz are read through gzip, including the multi-block files of ParallelGzipOutputStream
+    private static Reader openFile(String fileName) throws IOException {
+        InputStream in = new FileInputStream(fileName);
+        if (fileName.endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    public JsonObject readObject(String fileName) {
+        try (JsonReader reader = new JsonReader(openFile(fileName))) {
+            return JsonParser.parseReader(reader).getAsJsonObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Quarter deserializeQuarter(JsonElement json) {
+        return gson.fromJson(json, Quarter.class);
+    }
+
+    public CityConfig deserializeCityConfig(JsonElement json) {
+        return checkCityConfig(gson.fromJson(json, CityConfig.class));
+    }
+
     public Quarter deserializeQuarter(String fileName) {
         Quarter quarter;
-        try {
-            JsonReader reader = new JsonReader(new FileReader(fileName));
+        try (JsonReader reader = new JsonReader(openFile(fileName))) {
             quarter = gson.fromJson(reader, Quarter.class);
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
         return quarter;
     }
 
+    public QuarterStreamReader openQuarterStream(String fileName) {
+        try {
+            return new QuarterStreamReader(new JsonReader(new BufferedReader(openFile(fileName), 1 << 16)), this);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public RoadNetwork deserializeRoadNetwork(String fileName) {
+        JsonObject jsonObject = readObject(fileName);
+        List<Segment> edges = new ArrayList<>();
+        for (JsonElement jsonEdge : jsonObject.getAsJsonArray("edges")) {
+            edges.add(gson.fromJson(jsonEdge, Segment.class));
+        }
+        List<List<Segment>> quarterBorders = new ArrayList<>();
+        for (JsonElement jsonQuarter : jsonObject.getAsJsonArray("quarters")) {
+            List<Segment> borders = new ArrayList<>();
+            for (JsonElement jsonBorder : jsonQuarter.getAsJsonArray()) {
+                borders.add(gson.fromJson(jsonBorder, Segment.class));
+            }
+            quarterBorders.add(borders);
+        }
+        return new RoadNetwork(edges, quarterBorders);
+    }
+
+    // [{"quarter": index, "colour": colour} or {"from": [x, y], "to": [x, y]}, ...]
+    public List<CityEdit> deserializeEdits(String fileName) {
+        JsonArray jsonEdits;
+        try (JsonReader reader = new JsonReader(openFile(fileName))) {
+            jsonEdits = JsonParser.parseReader(reader).getAsJsonArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        List<CityEdit> edits = new ArrayList<>();
+        for (JsonElement jsonEdit : jsonEdits) {
+            JsonObject jsonObject = jsonEdit.getAsJsonObject();
+            if (jsonObject.has("quarter")) {
+                edits.add(CityEdit.recolour(jsonObject.get("quarter").getAsInt(), jsonObject.get("colour").getAsString()));
+            } else {
+                edits.add(CityEdit.moveVertex(toPoint(jsonObject.getAsJsonArray("from")), toPoint(jsonObject.getAsJsonArray("to"))));
+            }
+        }
+        return edits;
+    }
+
+    // graph_edges.json as written by JSONSerializer.serializeGraph
+    public List<Segment> deserializeEdges(String fileName) {
+        List<Segment> edges = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(openFile(fileName))) {
+            for (JsonElement jsonEdge : JsonParser.parseReader(reader).getAsJsonArray()) {
+                edges.add(gson.fromJson(jsonEdge, Segment.class));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return edges;
+    }
+
+    // buildings.json as written by JSONSerializer.serializeBuildingsList
+    public List<List<Building>> deserializeBuildingsList(String fileName) {
+        List<List<Building>> buildings = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(openFile(fileName))) {
+            for (JsonElement jsonQuarter : JsonParser.parseReader(reader).getAsJsonArray()) {
+                List<Building> quarterBuildings = new ArrayList<>();
+                for (JsonElement jsonBuilding : jsonQuarter.getAsJsonArray()) {
+                    JsonObject jsonObject = jsonBuilding.getAsJsonObject();
+                    List<Point> vertexes = new ArrayList<>();
+                    for (JsonElement jsonVertex : jsonObject.getAsJsonArray("vertexes")) {
+                        JsonObject vertex = jsonVertex.getAsJsonObject();
+                        vertexes.add(new Point(vertex.get("x").getAsDouble(), vertex.get("y").getAsDouble()));
+                    }
+                    quarterBuildings.add(new Building(jsonObject.get("color").getAsString(), vertexes));
+                }
+                buildings.add(quarterBuildings);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return buildings;
+    }
+
+    private static Point toPoint(JsonArray jsonPoint) {
+        return new Point(jsonPoint.get(0).getAsDouble(), jsonPoint.get(1).getAsDouble());
+    }
+
     public CityConfig deserializeCityConfig(String fileName) {
         CityConfig config;
-        try {
-            JsonReader reader = new JsonReader(new FileReader(fileName));
+        try (JsonReader reader = new JsonReader(openFile(fileName))) {
             config = gson.fromJson(reader, CityConfig.class);
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             throw new RuntimeException(e);
         }
-        return config;
+        return checkCityConfig(config);
+
+    }
 
+    // every zoom level has four times the tiles of the one before, so an unchecked maxZoom could ask for billions;
+    // a seeds range must be complete and in order
+    private static CityConfig checkCityConfig(CityConfig config) {
+        if (config != null && config.maxZoom != null && (config.maxZoom < 0 || config.maxZoom > CityConfig.MAX_ZOOM)) {
+            throw new JsonParseException("maxZoom must be between 0 and " + CityConfig.MAX_ZOOM + ", was " + config.maxZoom);
+        }
+        if (config != null && config.seeds != null && (config.seeds.size() != 2 || config.seeds.contains(null)
+                || config.seeds.get(0) > config.seeds.get(1))) {
+            throw new JsonParseException("seeds must be [first, last] with first <= last, was " + config.seeds);
+        }
+        return config;
     }
 }
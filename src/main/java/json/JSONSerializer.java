@@ -2,83 +2,261 @@ package json;
 
 import city.Building;
 import city.City;
-import com.google.gson.*;
+import city.CityDiff;
+import city.RoadNetwork;
+import com.google.gson.stream.JsonWriter;
 import geometry.Point;
 import geometry.Segment;
+import metrics.GenerationMetrics;
+import metrics.LatencyHistogram;
+import tiles.TilePyramid;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 public class JSONSerializer {
 
-    private final Gson gson;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final boolean pretty;
+    private final boolean compressed;
+    private final ExecutorService executor;
 
     public JSONSerializer() {
-        this.gson = new GsonBuilder()
-                .setPrettyPrinting()
-                .registerTypeAdapter(Segment.class, new EdgeSerializer())
-                .create();
+        this(true);
+    }
+
+    public JSONSerializer(boolean pretty) {
+        this(pretty, false, null);
     }
 
-    private static class EdgeSerializer implements JsonSerializer<Segment> {
-        @Override
-        public JsonElement serialize(Segment src, Type typeOfSrc, JsonSerializationContext context) {
-            JsonObject object = new JsonObject();
+    // compressed: every file is gzipped and gets a .gz suffix; blocks are compressed on the executor when there is one
+    // and on the writing thread otherwise, so a null executor keeps the output single-threaded
+    public JSONSerializer(boolean pretty, boolean compressed, ExecutorService executor) {
+        this.pretty = pretty;
+        this.compressed = compressed;
+        this.executor = executor;
+    }
+
+    private JsonWriter openWriter(String fileName) throws IOException {
+        return createWriter(openFile(fileName));
+    }
 
-            JsonArray start = new JsonArray();
-            start.add(src.getX1());
-            start.add(src.getY1());
-            object.add("start", start);
+    private Writer openFile(String fileName) throws IOException {
+        OutputStream out = compressed
+                ? new ParallelGzipOutputStream(new FileOutputStream(fileName + ".gz"), executor, getMaxPendingBlocks())
+                : new FileOutputStream(fileName);
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
 
-            JsonArray end = new JsonArray();
-            end.add(src.getX2());
-            end.add(src.getY2());
-            object.add("end", end);
+    // enough blocks in flight to keep every thread of the executor busy
+    private int getMaxPendingBlocks() {
+        int threads = executor instanceof ForkJoinPool pool ? pool.getParallelism() : Runtime.getRuntime().availableProcessors();
+        return threads * 2;
+    }
 
-            return object;
+    public JsonWriter createWriter(Writer writer) {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        if (pretty) {
+            jsonWriter.setIndent("  ");
         }
+        return jsonWriter;
     }
 
     public void serializeGraph(Collection<Segment> edges, Collection<Point> vertices, String path) {
-        try {
-            FileWriter edgesWriter = new FileWriter(path + "graph_edges.json");
-            gson.toJson(edges, edgesWriter);
-            edgesWriter.flush();
-            edgesWriter.close();
-
-            FileWriter verticesWriter = new FileWriter(path + "graph_vertices.json");
-            gson.toJson(vertices, verticesWriter);
-            verticesWriter.flush();
-            verticesWriter.close();
+        try (JsonWriter edgesWriter = openWriter(path + "graph_edges.json")) {
+            edgesWriter.beginArray();
+            for (Segment edge : edges) {
+                JSONCodec.writeSegment(edgesWriter, edge);
+            }
+            edgesWriter.endArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        try (JsonWriter verticesWriter = openWriter(path + "graph_vertices.json")) {
+            verticesWriter.beginArray();
+            for (Point vertex : vertices) {
+                JSONCodec.writePoint(verticesWriter, vertex);
+            }
+            verticesWriter.endArray();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
     public void serializeBuildings(List<Building> buildings, String path) {
-        try {
-            FileWriter buildingsWriter = new FileWriter(path + "buildings.json");
-            gson.toJson(buildings, buildingsWriter);
-            buildingsWriter.flush();
-            buildingsWriter.close();
+        try (JsonWriter buildingsWriter = openWriter(path + "buildings.json")) {
+            JSONCodec.writeBuildings(buildingsWriter, buildings);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
+
     public void serializeBuildingsList(List<List<Building>> buildings, String path) {
+        try (BuildingsStreamWriter buildingsWriter = openBuildingsStream(path)) {
+            for (List<Building> quarterBuildings : buildings) {
+                buildingsWriter.write(quarterBuildings);
+            }
+        }
+    }
+
+    // buildings.json in the serializeBuildingsList layout, written quarter by quarter
+    public BuildingsStreamWriter openBuildingsStream(String path) {
+        try {
+            return new BuildingsStreamWriter(openWriter(path + "buildings.json"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // buildings.ndjson: one line with the buildings of each quarter; lines are always compact
+    public BuildingsLineWriter openBuildingsLines(String path) {
         try {
-            FileWriter buildingsWriter = new FileWriter(path + "buildings.json");
-            gson.toJson(buildings, buildingsWriter);
-            buildingsWriter.flush();
-            buildingsWriter.close();
+            return new BuildingsLineWriter(openFile(path + "buildings.ndjson"), new JSONSerializer(false));
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
+    // {"edges": [segments], "quarters": [[segments], ...]}
+    public void serializeRoadNetwork(RoadNetwork roads, String fileName) {
+        try (JsonWriter writer = openWriter(fileName)) {
+            writer.beginObject();
+            writer.name("edges").beginArray();
+            for (Segment edge : roads.edges()) {
+                JSONCodec.writeSegment(writer, edge);
+            }
+            writer.endArray();
+            writer.name("quarters").beginArray();
+            for (List<Segment> borders : roads.quarterBorders()) {
+                writer.beginArray();
+                for (Segment border : borders) {
+                    JSONCodec.writeSegment(writer, border);
+                }
+                writer.endArray();
+            }
+            writer.endArray();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // {"quarters": [{"index", "colour", "removed": [buildings], "added": [buildings]}], "removedEdges", "addedEdges"}
+    public void serializeDiff(CityDiff diff, String fileName) {
+        try (JsonWriter writer = openWriter(fileName)) {
+            writer.beginObject();
+            writer.name("quarters").beginArray();
+            for (CityDiff.QuarterChange change : diff.quarters()) {
+                writer.beginObject();
+                writer.name("index").value(change.index());
+                writer.name("colour").value(change.colour());
+                writer.name("removed");
+                JSONCodec.writeBuildings(writer, change.removed());
+                writer.name("added");
+                JSONCodec.writeBuildings(writer, change.added());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.name("removedEdges").beginArray();
+            for (Segment edge : diff.removedEdges()) {
+                JSONCodec.writeSegment(writer, edge);
+            }
+            writer.endArray();
+            writer.name("addedEdges").beginArray();
+            for (Segment edge : diff.addedEdges()) {
+                JSONCodec.writeSegment(writer, edge);
+            }
+            writer.endArray();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // summary of a generation: phase timings, counters and fill latency per colour, times in milliseconds
+    public void serializeMetrics(GenerationMetrics metrics, String path) {
+        try (JsonWriter writer = openWriter(path + "metrics.json")) {
+            writer.beginObject();
+            writer.name("phases").beginObject();
+            for (GenerationMetrics.Phase phase : GenerationMetrics.Phase.values()) {
+                writer.name(phase.name().toLowerCase()).beginObject();
+                writer.name("count").value(metrics.getPhaseCount(phase));
+                writer.name("totalMs").value(toMillis(metrics.getPhaseNanos(phase)));
+                writer.name("maxMs").value(toMillis(metrics.getPhaseMaxNanos(phase)));
+                writer.endObject();
+            }
+            writer.endObject();
+
+            writer.name("counters").beginObject();
+            for (GenerationMetrics.Counter counter : GenerationMetrics.Counter.values()) {
+                writer.name(counter.name().toLowerCase()).value(metrics.getCounter(counter));
+            }
+            writer.endObject();
+
+            writer.name("fillLatency").beginObject();
+            for (Map.Entry<String, LatencyHistogram> entry : metrics.getFillLatencies().entrySet()) {
+                LatencyHistogram histogram = entry.getValue();
+                writer.name(entry.getKey()).beginObject();
+                writer.name("count").value(histogram.getCount());
+                writer.name("meanMs").value(toMillis(histogram.getTotalNanos() / Math.max(histogram.getCount(), 1)));
+                writer.name("p50Ms").value(toMillis(histogram.getPercentileNanos(0.5)));
+                writer.name("p90Ms").value(toMillis(histogram.getPercentileNanos(0.9)));
+                writer.name("p99Ms").value(toMillis(histogram.getPercentileNanos(0.99)));
+                writer.name("maxMs").value(toMillis(histogram.getMaxNanos()));
+                // bucket limit in milliseconds -> number of quarters filled faster than that
+                writer.name("buckets").beginObject();
+                for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                    if (histogram.getBucket(i) > 0) {
+                        writer.name(String.valueOf(toMillis(LatencyHistogram.getBucketLimitNanos(i))))
+                                .value(histogram.getBucket(i));
+                    }
+                }
+                writer.endObject();
+                writer.endObject();
+            }
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // what a client needs to place the tiles: {"minX", "minY", "size", "maxZoom", "extent", "layers"}
+    public void serializeTilePyramid(TilePyramid pyramid, String path) {
+        try (JsonWriter writer = openWriter(path + "metadata.json")) {
+            writer.beginObject();
+            writer.name("minX").value(pyramid.getMinX());
+            writer.name("minY").value(pyramid.getMinY());
+            writer.name("size").value(pyramid.getSize());
+            writer.name("maxZoom").value(pyramid.getMaxZoom());
+            writer.name("extent").value(TilePyramid.EXTENT);
+            writer.name("layers").beginObject();
+            writer.name("roads").value(TilePyramid.ROADS);
+            writer.name("quarters").value(TilePyramid.QUARTERS);
+            writer.name("buildings").value(TilePyramid.BUILDINGS);
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+
     public void serializeCity(City city, String outputPath) {
         serializeBuildingsList(city.getBuildings(), outputPath);
         serializeGraph(city.getEdges(), city.getVertices(), outputPath);
@@ -0,0 +1,137 @@
+package json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+// Gzip in independent blocks: every BLOCK_SIZE bytes written become one complete gzip member, compressed on the
+// executor while the next block fills, and the members are written out in order. Concatenated members form a single
+// valid gzip stream (RFC 1952) that GZIPInputStream and gunzip read back whole. At most maxPending blocks are in
+// flight, so memory stays bounded however large the output is. Without an executor, blocks are compressed in place.
+public class ParallelGzipOutputStream extends OutputStream {
+
+    private static final int BLOCK_SIZE = 1 << 20;
+    // JSON compresses well even at the fastest level, and compression time is what the writer waits for
+    private static final int LEVEL = Deflater.BEST_SPEED;
+
+    private final OutputStream out;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final ArrayDeque<Block> pending = new ArrayDeque<>();
+    // blocks whose compression has been written out, reused for the next input
+    private final ArrayDeque<byte[]> free = new ArrayDeque<>();
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int size;
+    private boolean closed;
+
+    private record Block(byte[] data, FutureTask<byte[]> compressed) {
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, ExecutorService executor, int maxPending) {
+        this.out = out;
+        this.executor = executor;
+        this.maxPending = Math.max(maxPending, 1);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (size == block.length) {
+            writeBlock();
+        }
+        block[size++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, block.length - size);
+            System.arraycopy(b, off, block, size, n);
+            size += n;
+            off += n;
+            len -= n;
+            if (size == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    // a partial block is not compressed early: small members would only make the output larger
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBlock();
+            while (!pending.isEmpty()) {
+                writeFirst();
+            }
+        } finally {
+            for (Block waiting : pending) {
+                waiting.compressed().cancel(false);
+            }
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (size == 0) {
+            return;
+        }
+        byte[] data = block;
+        int length = size;
+        block = free.isEmpty() ? new byte[BLOCK_SIZE] : free.poll();
+        size = 0;
+
+        if (executor == null) {
+            out.write(compress(data, length));
+            free.add(data);
+            return;
+        }
+        while (pending.size() >= maxPending) {
+            writeFirst();
+        }
+        FutureTask<byte[]> compressed = new FutureTask<>(() -> compress(data, length));
+        pending.add(new Block(data, compressed));
+        executor.execute(compressed);
+    }
+
+    // a block no worker has started yet is compressed here, so a writer running on the pool does not wait on itself
+    private void writeFirst() throws IOException {
+        Block first = pending.poll();
+        first.compressed().run();
+        try {
+            out.write(first.compressed().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        free.add(first.data());
+    }
+
+    private static byte[] compress(byte[] data, int length) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes, 1 << 16) {
+            {
+                def.setLevel(LEVEL);
+            }
+        }) {
+            gzip.write(data, 0, length);
+        }
+        return bytes.toByteArray();
+    }
+}
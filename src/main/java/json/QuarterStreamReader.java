@@ -0,0 +1,46 @@
+package json;
+
+import city.Quarter;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Reads quarters one at a time from newline-delimited JSON (one quarter object per line), so the input is never
+// held in memory as a whole
+public class QuarterStreamReader implements Closeable {
+
+    private final JsonReader reader;
+    private final JSONDeserializer deserializer;
+    private long count;
+
+    QuarterStreamReader(JsonReader reader, JSONDeserializer deserializer) {
+        this.reader = reader;
+        this.deserializer = deserializer;
+        reader.setLenient(true);
+    }
+
+    // the next quarter, or null at the end of the input
+    public Quarter next() {
+        try {
+            if (reader.peek() == JsonToken.END_DOCUMENT) {
+                return null;
+            }
+            count++;
+            return deserializer.deserializeQuarter(JsonParser.parseReader(reader));
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Malformed quarter " + count, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
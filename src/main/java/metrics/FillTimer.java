@@ -0,0 +1,28 @@
+package metrics;
+
+// Times the filling of one quarter; the duration goes to the colour's histogram and, when recording, to a JFR event
+public class FillTimer {
+
+    private final GenerationMetrics metrics;
+    private final String colour;
+    private final QuarterFillEvent event;
+    private final long start;
+
+    FillTimer(GenerationMetrics metrics, String colour) {
+        this.metrics = metrics;
+        this.colour = colour;
+        event = new QuarterFillEvent();
+        event.begin();
+        start = System.nanoTime();
+    }
+
+    public void stop(int buildings) {
+        metrics.recordFill(colour, System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.colour = colour;
+            event.buildings = buildings;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Phase timings, counters and per-colour fill latencies of one generation.
+// Quarters are filled on several threads at once, so everything here may be updated concurrently.
+public class GenerationMetrics {
+
+    public enum Phase {
+        BORDERS, GRAPH, RING, COLORING, FILL
+    }
+
+    public enum Counter {
+        // candidate roads dropped because they cross another road or meet the next border at a sharp angle
+        REJECTED_EDGES,
+        // roads removed again while closing a ring of quarters
+        HORIZONTAL_BACKTRACKS,
+        // null or NaN building vertices dropped before a building is added
+        FILTERED_VERTICES,
+        // quarters whose base could not be found on the inner ring and were closed with a straight border
+        UNMATCHED_QUARTER_BASES,
+        // corner buildings not built because their walls do not meet
+        SKIPPED_BUILDINGS
+    }
+
+    // for work nobody reports on, e.g. a quarter filled on its own: records nothing, and is shared
+    public static final GenerationMetrics NONE = new GenerationMetrics() {
+        @Override
+        public void recordPhase(Phase phase, long nanos) {
+        }
+
+        @Override
+        public void increment(Counter counter) {
+        }
+
+        @Override
+        public void add(Counter counter, long amount) {
+        }
+
+        @Override
+        public void recordFill(String colour, long nanos) {
+        }
+    };
+
+    private final LongAdder[] counters = newAdders(Counter.values().length);
+    private final LongAdder[] phaseCounts = newAdders(Phase.values().length);
+    private final LongAdder[] phaseNanos = newAdders(Phase.values().length);
+    private final AtomicLong[] phaseMaxNanos = new AtomicLong[Phase.values().length];
+    private final Map<String, LatencyHistogram> fillLatencies = new ConcurrentHashMap<>();
+
+    public GenerationMetrics() {
+        for (int i = 0; i < phaseMaxNanos.length; i++) {
+            phaseMaxNanos[i] = new AtomicLong();
+        }
+    }
+
+    private static LongAdder[] newAdders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    public PhaseTimer startPhase(Phase phase) {
+        return new PhaseTimer(this, phase);
+    }
+
+    public FillTimer startFill(String colour) {
+        return new FillTimer(this, colour);
+    }
+
+    public void recordPhase(Phase phase, long nanos) {
+        phaseCounts[phase.ordinal()].increment();
+        phaseNanos[phase.ordinal()].add(nanos);
+        phaseMaxNanos[phase.ordinal()].accumulateAndGet(nanos, Math::max);
+    }
+
+    public void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    public void add(Counter counter, long amount) {
+        if (amount != 0) {
+            counters[counter.ordinal()].add(amount);
+        }
+    }
+
+    public void recordFill(String colour, long nanos) {
+        fillLatencies.computeIfAbsent(colour != null ? colour : "none", c -> new LatencyHistogram()).record(nanos);
+    }
+
+    public long getPhaseCount(Phase phase) {
+        return phaseCounts[phase.ordinal()].sum();
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    public long getPhaseMaxNanos(Phase phase) {
+        return phaseMaxNanos[phase.ordinal()].get();
+    }
+
+    public long getCounter(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    // sorted by colour
+    public Map<String, LatencyHistogram> getFillLatencies() {
+        return new TreeMap<>(fillLatencies);
+    }
+}
@@ -0,0 +1,102 @@
+package metrics;
+
+import com.sun.management.GcInfo;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// GC, heap and allocation figures from the JDK management beans, measured from start() on
+public class JvmMonitor {
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+    private final Map<String, long[]> collectorsAtStart = new HashMap<>();
+
+    public JvmMonitor() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+    }
+
+    public void start() {
+        for (GarbageCollectorMXBean collector : collectors) {
+            collectorsAtStart.put(collector.getName(), new long[]{collector.getCollectionCount(), collector.getCollectionTime()});
+        }
+        for (MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+    }
+
+    public List<SoakReport.Collector> getCollectors() {
+        List<SoakReport.Collector> result = new ArrayList<>();
+        for (GarbageCollectorMXBean collector : collectors) {
+            long[] atStart = collectorsAtStart.getOrDefault(collector.getName(), new long[2]);
+            result.add(new SoakReport.Collector(collector.getName(),
+                    collector.getCollectionCount() - atStart[0], collector.getCollectionTime() - atStart[1]));
+        }
+        return result;
+    }
+
+    // highest usage of every heap pool since start()
+    public Map<String, Long> getHeapPeaks() {
+        Map<String, Long> peaks = new LinkedHashMap<>();
+        for (MemoryPoolMXBean pool : heapPools) {
+            peaks.put(pool.getName(), pool.getPeakUsage().getUsed());
+        }
+        return peaks;
+    }
+
+    public long getHeapMax() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getMax();
+    }
+
+    public SoakReport.Sample sample(double seconds, long completed) {
+        return new SoakReport.Sample(seconds, completed, ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                getHeapAfterLastGc());
+    }
+
+    // heap in use right after the latest collection of any collector, or -1 before the first one
+    private long getHeapAfterLastGc() {
+        GcInfo last = null;
+        for (GarbageCollectorMXBean collector : collectors) {
+            if (collector instanceof com.sun.management.GarbageCollectorMXBean detailed) {
+                GcInfo info = detailed.getLastGcInfo();
+                if (info != null && (last == null || info.getEndTime() > last.getEndTime())) {
+                    last = info;
+                }
+            }
+        }
+        if (last == null) {
+            return -1;
+        }
+        long used = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            MemoryUsage usage = last.getMemoryUsageAfterGc().get(pool.getName());
+            if (usage != null) {
+                used += usage.getUsed();
+            }
+        }
+        return used;
+    }
+
+    // bytes allocated so far by the calling thread, or -1 when the JVM does not count them
+    public static long getAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean counting && counting.isThreadAllocatedMemorySupported()
+                && counting.isThreadAllocatedMemoryEnabled()) {
+            return counting.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,16 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("quarter_generator.Phase")
+@Label("Generation Phase")
+@Category("Quarter Generator")
+@Description("One run of a city generation phase")
+class PhaseEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    String phase;
+}
@@ -0,0 +1,27 @@
+package metrics;
+
+// Times one run of a phase; the duration goes to the metrics and, when recording, to a JFR event
+public class PhaseTimer {
+
+    private final GenerationMetrics metrics;
+    private final GenerationMetrics.Phase phase;
+    private final PhaseEvent event;
+    private final long start;
+
+    PhaseTimer(GenerationMetrics metrics, GenerationMetrics.Phase phase) {
+        this.metrics = metrics;
+        this.phase = phase;
+        event = new PhaseEvent();
+        event.begin();
+        start = System.nanoTime();
+    }
+
+    public void stop() {
+        metrics.recordPhase(phase, System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase.name().toLowerCase();
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("quarter_generator.QuarterFill")
+@Label("Quarter Fill")
+@Category("Quarter Generator")
+@Description("Filling of one quarter with buildings")
+class QuarterFillEvent extends jdk.jfr.Event {
+
+    @Label("Colour")
+    String colour;
+
+    @Label("Buildings")
+    int buildings;
+}
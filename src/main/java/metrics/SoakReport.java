@@ -0,0 +1,20 @@
+package metrics;
+
+import java.util.List;
+import java.util.Map;
+
+// Result of a soak run, covering only the measured part after the warmup. Allocation is -1 when the JVM cannot
+// count allocated bytes per thread.
+public record SoakReport(double seconds, int workers, long failed, Map<String, LogLinearHistogram> latencies,
+                         long allocatedBytes, List<Collector> collectors, Map<String, Long> heapPeakBytes,
+                         long heapMaxBytes, List<Sample> samples) {
+
+    // collections and the time spent in them during the run
+    public record Collector(String name, long count, long timeMillis) {
+    }
+
+    // heap after the latest collection (-1 before the first) is the figure to watch for leaks: it should level off
+    // over a long run
+    public record Sample(double seconds, long completed, long heapUsedBytes, long heapAfterGcBytes) {
+    }
+}
@@ -0,0 +1,76 @@
+package tiles;
+
+import java.util.Arrays;
+
+// Clipping of lines and polygons to an axis-aligned box; coordinates are flat arrays x0, y0, x1, y1, ...
+class TileClipper {
+
+    private TileClipper() {
+    }
+
+    // Liang-Barsky; null when the segment misses the box
+    static double[] clipSegment(double x1, double y1, double x2, double y2,
+                                double minX, double minY, double maxX, double maxY) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double[] p = {-dx, dx, -dy, dy};
+        double[] q = {x1 - minX, maxX - x1, y1 - minY, maxY - y1};
+        double t0 = 0;
+        double t1 = 1;
+        for (int i = 0; i < 4; i++) {
+            if (p[i] == 0) {
+                if (q[i] < 0) {
+                    return null;
+                }
+                continue;
+            }
+            double t = q[i] / p[i];
+            if (p[i] < 0) {
+                t0 = Math.max(t0, t);
+            } else {
+                t1 = Math.min(t1, t);
+            }
+            if (t0 > t1) {
+                return null;
+            }
+        }
+        return new double[]{x1 + t0 * dx, y1 + t0 * dy, x1 + t1 * dx, y1 + t1 * dy};
+    }
+
+    // Sutherland-Hodgman against the four sides of the box; an empty array when nothing is left
+    static double[] clipPolygon(double[] ring, double minX, double minY, double maxX, double maxY) {
+        double[] result = ring;
+        result = clipSide(result, 0, minX, true);
+        result = clipSide(result, 0, maxX, false);
+        result = clipSide(result, 1, minY, true);
+        result = clipSide(result, 1, maxY, false);
+        return result;
+    }
+
+    // keeps the part with coordinate (0 = x, 1 = y) above the limit when lower is true, below it otherwise
+    private static double[] clipSide(double[] ring, int axis, double limit, boolean lower) {
+        int points = ring.length / 2;
+        if (points == 0) {
+            return ring;
+        }
+        double[] result = new double[ring.length * 2 + 4];
+        int size = 0;
+        for (int i = 0; i < points; i++) {
+            int previous = (i + points - 1) % points;
+            double currentValue = ring[i * 2 + axis];
+            double previousValue = ring[previous * 2 + axis];
+            boolean currentInside = lower ? currentValue >= limit : currentValue <= limit;
+            boolean previousInside = lower ? previousValue >= limit : previousValue <= limit;
+            if (currentInside != previousInside) {
+                double t = (limit - previousValue) / (currentValue - previousValue);
+                result[size++] = ring[previous * 2] + t * (ring[i * 2] - ring[previous * 2]);
+                result[size++] = ring[previous * 2 + 1] + t * (ring[i * 2 + 1] - ring[previous * 2 + 1]);
+            }
+            if (currentInside) {
+                result[size++] = ring[i * 2];
+                result[size++] = ring[i * 2 + 1];
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+}
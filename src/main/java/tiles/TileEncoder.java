@@ -0,0 +1,115 @@
+package tiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Binary layout of one tile (all numbers are unsigned LEB128 varints, coordinates zigzag encoded):
+//   tile    := VERSION colourCount colour* layerCount layer*
+//   colour  := byteLength utf8Bytes
+//   layer   := kind featureCount feature*
+//   feature := [colourIndex, polygon layers only] pointCount (dx dy)*
+// Points are in tile units (0..EXTENT) and stored as differences from the previous point of the layer,
+// starting from (0, 0); polygon rings are closed implicitly.
+class TileEncoder {
+
+    static final int VERSION = 1;
+
+    private final List<String> colours = new ArrayList<>();
+    private final Map<String, Integer> colourIndices = new HashMap<>();
+    private final List<Layer> layers = new ArrayList<>();
+
+    private static class Layer {
+        final int kind;
+        final boolean polygons;
+        final List<int[]> features = new ArrayList<>();
+        final List<Integer> featureColours = new ArrayList<>();
+
+        Layer(int kind, boolean polygons) {
+            this.kind = kind;
+            this.polygons = polygons;
+        }
+    }
+
+    private byte[] bytes = new byte[256];
+    private int size;
+
+    int addLayer(int kind, boolean polygons) {
+        layers.add(new Layer(kind, polygons));
+        return layers.size() - 1;
+    }
+
+    // points: x0, y0, x1, y1, ... in tile units
+    void addFeature(int layer, String colour, int[] points) {
+        Layer target = layers.get(layer);
+        target.features.add(points);
+        if (target.polygons) {
+            target.featureColours.add(colourIndices.computeIfAbsent(colour, c -> {
+                colours.add(c);
+                return colours.size() - 1;
+            }));
+        }
+    }
+
+    boolean isEmpty() {
+        return layers.stream().allMatch(layer -> layer.features.isEmpty());
+    }
+
+    byte[] encode() {
+        size = 0;
+        writeVarint(VERSION);
+        writeVarint(colours.size());
+        for (String colour : colours) {
+            byte[] utf8 = colour.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            ensureCapacity(utf8.length);
+            System.arraycopy(utf8, 0, bytes, size, utf8.length);
+            size += utf8.length;
+        }
+
+        List<Layer> nonEmpty = layers.stream().filter(layer -> !layer.features.isEmpty()).toList();
+        writeVarint(nonEmpty.size());
+        for (Layer layer : nonEmpty) {
+            writeVarint(layer.kind);
+            writeVarint(layer.features.size());
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < layer.features.size(); i++) {
+                int[] points = layer.features.get(i);
+                if (layer.polygons) {
+                    writeVarint(layer.featureColours.get(i));
+                }
+                writeVarint(points.length / 2);
+                for (int p = 0; p < points.length; p += 2) {
+                    writeVarint(zigzag(points[p] - x));
+                    writeVarint(zigzag(points[p + 1] - y));
+                    x = points[p];
+                    y = points[p + 1];
+                }
+            }
+        }
+        return Arrays.copyOf(bytes, size);
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private void writeVarint(int value) {
+        ensureCapacity(5);
+        while ((value & ~0x7F) != 0) {
+            bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte) value;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package tiles;
+
+import city.Building;
+import city.City;
+import city.CityIndex;
+import geometry.Point;
+import geometry.RTree;
+import geometry.Segment;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+// Cuts a finished city into a z/x/y pyramid of square map tiles. Zoom 0 is one tile over the bounding square of the
+// roads, and every zoom level splits each tile in four. Tiles covering more than BUILDING_TILE_SIZE of the city draw
+// every quarter as one footprint in its colour; smaller tiles draw the buildings. Geometry is clipped to the tile
+// and snapped to EXTENT units, which also drops the detail that would be smaller than a unit at low zooms.
+public class TilePyramid {
+
+    public static final int EXTENT = 4096;
+    // layer kinds in the tile encoding
+    public static final int ROADS = 0;
+    public static final int QUARTERS = 1;
+    public static final int BUILDINGS = 2;
+
+    // geometry is kept this far (in tile units) outside the tile, so features do not show seams at tile borders
+    private static final int BUFFER = 64;
+    private static final double BUILDING_TILE_SIZE = 1024;
+    // tiles handed to the executor at a time, so the tasks held stay bounded whatever the zoom
+    private static final int BATCH_SIZE = 256;
+
+    private final CityIndex index;
+    private final RTree<Footprint> footprints;
+    private final int maxZoom;
+    private final double minX;
+    private final double minY;
+    private final double size;
+
+    private record Footprint(String colour, List<Point> outline) {
+    }
+
+    public TilePyramid(City city, int maxZoom) {
+        this.index = city.getIndex();
+        this.footprints = new RTree<>(getFootprints(city), TilePyramid::getBounds);
+        this.maxZoom = maxZoom;
+
+        double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (Point vertex : city.getVertices()) {
+            bounds[0] = Math.min(bounds[0], vertex.x);
+            bounds[1] = Math.min(bounds[1], vertex.y);
+            bounds[2] = Math.max(bounds[2], vertex.x);
+            bounds[3] = Math.max(bounds[3], vertex.y);
+        }
+        minX = bounds[0];
+        minY = bounds[1];
+        size = Math.max(bounds[2] - bounds[0], bounds[3] - bounds[1]);
+    }
+
+    // the quarter outline from the road network, or the convex hull of the quarter's buildings for a restored city
+    private static List<Footprint> getFootprints(City city) {
+        List<Footprint> footprints = new ArrayList<>();
+        List<List<Building>> buildings = city.getBuildings();
+        for (int i = 0; i < buildings.size(); i++) {
+            List<Building> quarterBuildings = buildings.get(i);
+            if (quarterBuildings.isEmpty()) continue;
+            String colour = quarterBuildings.get(0).color();
+            List<Point> outline = new ArrayList<>();
+            if (city.getRoadNetwork() != null) {
+                for (Segment border : city.getRoadNetwork().quarterBorders().get(i)) {
+                    outline.add(border.getStartPoint());
+                }
+            } else {
+                outline = getConvexHull(quarterBuildings);
+            }
+            if (outline.size() >= 3) {
+                footprints.add(new Footprint(colour, outline));
+            }
+        }
+        return footprints;
+    }
+
+    // monotone chain
+    private static List<Point> getConvexHull(List<Building> buildings) {
+        List<Point> points = new ArrayList<>();
+        for (Building building : buildings) {
+            points.addAll(building.vertexes());
+        }
+        points.sort(Comparator.<Point>comparingDouble(p -> p.x).thenComparingDouble(p -> p.y));
+        if (points.size() < 3) {
+            return points;
+        }
+
+        Point[] hull = new Point[points.size() * 2];
+        int k = 0;
+        for (Point point : points) {
+            while (k >= 2 && cross(hull[k - 2], hull[k - 1], point) <= 0) k--;
+            hull[k++] = point;
+        }
+        for (int i = points.size() - 2, lower = k + 1; i >= 0; i--) {
+            while (k >= lower && cross(hull[k - 2], hull[k - 1], points.get(i)) <= 0) k--;
+            hull[k++] = points.get(i);
+        }
+        // the last point repeats the first; the rest of the array was never filled
+        return new ArrayList<>(Arrays.asList(hull).subList(0, k - 1));
+    }
+
+    private static double cross(Point o, Point a, Point b) {
+        return (a.x - o.x) * (b.y - o.y) - (a.y - o.y) * (b.x - o.x);
+    }
+
+    private static double[] getBounds(Footprint footprint) {
+        double[] bounds = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (Point vertex : footprint.outline()) {
+            bounds[0] = Math.min(bounds[0], vertex.x);
+            bounds[1] = Math.min(bounds[1], vertex.y);
+            bounds[2] = Math.max(bounds[2], vertex.x);
+            bounds[3] = Math.max(bounds[3], vertex.y);
+        }
+        return bounds;
+    }
+
+    // the area a tile takes geometry from: the tile and its buffer, as minX, minY, maxX, maxY
+    private double[] getBox(int z, int x, int y) {
+        double tileSize = size / (1 << z);
+        double tileMinX = minX + x * tileSize;
+        double tileMinY = minY + y * tileSize;
+        double buffer = tileSize * BUFFER / EXTENT;
+        return new double[]{tileMinX - buffer, tileMinY - buffer, tileMinX + tileSize + buffer, tileMinY + tileSize + buffer};
+    }
+
+    // whether anything of the city falls into the box of the tile; when nothing does, the same holds for every tile
+    // below it, since their boxes lie inside this one
+    private boolean hasContent(int z, int x, int y) {
+        double[] box = getBox(z, x, y);
+        return !index.queryEdges(box[0], box[1], box[2], box[3]).isEmpty()
+                || !footprints.query(box[0], box[1], box[2], box[3]).isEmpty()
+                || !index.queryBuildings(box[0], box[1], box[2], box[3]).isEmpty();
+    }
+
+    // the encoded tile, or null when nothing of the city falls into it
+    public byte[] getTile(int z, int x, int y) {
+        double tileSize = size / (1 << z);
+        double tileMinX = minX + x * tileSize;
+        double tileMinY = minY + y * tileSize;
+        double[] box = getBox(z, x, y);
+        double boxMinX = box[0];
+        double boxMinY = box[1];
+        double boxMaxX = box[2];
+        double boxMaxY = box[3];
+
+        TileEncoder encoder = new TileEncoder();
+        int roads = encoder.addLayer(ROADS, false);
+        for (Segment edge : index.queryEdges(boxMinX, boxMinY, boxMaxX, boxMaxY)) {
+            double[] clipped = TileClipper.clipSegment(edge.getX1(), edge.getY1(), edge.getX2(), edge.getY2(),
+                    boxMinX, boxMinY, boxMaxX, boxMaxY);
+            if (clipped != null) {
+                int[] points = toTileUnits(clipped, tileMinX, tileMinY, tileSize, false);
+                if (points.length >= 4) {
+                    encoder.addFeature(roads, null, points);
+                }
+            }
+        }
+
+        if (tileSize > BUILDING_TILE_SIZE) {
+            int quarters = encoder.addLayer(QUARTERS, true);
+            for (Footprint footprint : footprints.query(boxMinX, boxMinY, boxMaxX, boxMaxY)) {
+                addPolygon(encoder, quarters, footprint.colour(), footprint.outline(),
+                        tileMinX, tileMinY, tileSize, boxMinX, boxMinY, boxMaxX, boxMaxY);
+            }
+        } else {
+            int buildings = encoder.addLayer(BUILDINGS, true);
+            for (Building building : index.queryBuildings(boxMinX, boxMinY, boxMaxX, boxMaxY)) {
+                addPolygon(encoder, buildings, building.color(), building.vertexes(),
+                        tileMinX, tileMinY, tileSize, boxMinX, boxMinY, boxMaxX, boxMaxY);
+            }
+        }
+
+        return encoder.isEmpty() ? null : encoder.encode();
+    }
+
+    private static void addPolygon(TileEncoder encoder, int layer, String colour, List<Point> outline,
+                                   double tileMinX, double tileMinY, double tileSize,
+                                   double boxMinX, double boxMinY, double boxMaxX, double boxMaxY) {
+        double[] ring = new double[outline.size() * 2];
+        for (int i = 0; i < outline.size(); i++) {
+            ring[i * 2] = outline.get(i).x;
+            ring[i * 2 + 1] = outline.get(i).y;
+        }
+        double[] clipped = TileClipper.clipPolygon(ring, boxMinX, boxMinY, boxMaxX, boxMaxY);
+        int[] points = toTileUnits(clipped, tileMinX, tileMinY, tileSize, true);
+        if (points.length >= 6) {
+            encoder.addFeature(layer, colour, points);
+        }
+    }
+
+    // snaps to whole tile units and drops repeated points (and, for rings, a last point equal to the first)
+    private static int[] toTileUnits(double[] coordinates, double tileMinX, double tileMinY, double tileSize, boolean ring) {
+        int[] points = new int[coordinates.length];
+        int size = 0;
+        for (int i = 0; i < coordinates.length; i += 2) {
+            int x = (int) Math.round((coordinates[i] - tileMinX) / tileSize * EXTENT);
+            int y = (int) Math.round((coordinates[i + 1] - tileMinY) / tileSize * EXTENT);
+            if (size > 0 && points[size - 2] == x && points[size - 1] == y) continue;
+            points[size++] = x;
+            points[size++] = y;
+        }
+        if (ring && size >= 4 && points[0] == points[size - 2] && points[1] == points[size - 1]) {
+            size -= 2;
+        }
+        return Arrays.copyOf(points, size);
+    }
+
+    // writes every non-empty tile to <path>z/x/y.bin, tiles in parallel when an executor is given;
+    // returns the number of tiles written. The pyramid is walked depth first and only below tiles that have content,
+    // so the tiles visited follow the city rather than 4^maxZoom, and only the current path is held.
+    public int write(String path, ExecutorService executor) {
+        ArrayDeque<int[]> tiles = new ArrayDeque<>();
+        tiles.push(new int[]{0, 0, 0});
+        List<FutureTask<Boolean>> batch = new ArrayList<>();
+        int written = 0;
+        while (!tiles.isEmpty()) {
+            int[] tile = tiles.pop();
+            if (!hasContent(tile[0], tile[1], tile[2])) continue;
+            batch.add(new FutureTask<>(() -> writeTile(path, tile[0], tile[1], tile[2])));
+            if (tile[0] < maxZoom) {
+                for (int i = 3; i >= 0; i--) {
+                    tiles.push(new int[]{tile[0] + 1, tile[1] * 2 + i / 2, tile[2] * 2 + i % 2});
+                }
+            }
+            if (batch.size() == BATCH_SIZE) {
+                written += writeBatch(batch, executor);
+                batch.clear();
+            }
+        }
+        return written + writeBatch(batch, executor);
+    }
+
+    // a tile no worker has started yet is written here, so a caller running on the pool does not wait on itself
+    private static int writeBatch(List<FutureTask<Boolean>> batch, ExecutorService executor) {
+        if (executor != null) {
+            for (FutureTask<Boolean> tile : batch) {
+                executor.execute(tile);
+            }
+        }
+        int written = 0;
+        try {
+            for (FutureTask<Boolean> tile : batch) {
+                tile.run();
+                written += tile.get() ? 1 : 0;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+        return written;
+    }
+
+    private boolean writeTile(String path, int z, int x, int y) throws IOException {
+        byte[] tile = getTile(z, x, y);
+        if (tile == null) {
+            return false;
+        }
+        Path directory = Paths.get(path, String.valueOf(z), String.valueOf(x));
+        Files.createDirectories(directory);
+        Files.write(directory.resolve(y + ".bin"), tile);
+        return true;
+    }
+
+    public int getMaxZoom() {
+        return maxZoom;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getSize() {
+        return size;
+    }
+}
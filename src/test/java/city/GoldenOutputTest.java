@@ -0,0 +1,227 @@
+package city;
+
+import com.google.gson.stream.JsonWriter;
+import geometry.Point;
+import geometry.Randomizer;
+import geometry.Segment;
+import json.JSONCodec;
+import json.JSONDeserializer;
+import json.JSONSerializer;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Golden-output check for the generator: a city for every shape and a quarter for every colour, each from a fixed
+// seed, against graph_edges.json and buildings.json recorded under src/test/resources/golden/<case>/. Cities are also
+// generated with several threads, which must not change them. After an intended change of output, record the goldens
+// again with main, run from the project root on the test classpath.
+class GoldenOutputTest {
+
+    private static final double TOLERANCE = 1e-9;
+    private static final String[] COLOURS = {"park", "market", "square", "industrial", "poor", "middle", "rich"};
+    private static final double CITY_SIDE_LENGTH = 1500;
+    private static final long SEED = 20240601;
+    private static final int THREADS = 4;
+    // differences listed in a failure; the rest are only counted
+    private static final int MAX_REPORTED = 20;
+
+    private record Result(List<Segment> edges, List<List<Building>> buildings) {
+    }
+
+    @TestFactory
+    List<DynamicTest> matchesGoldens() {
+        List<DynamicTest> tests = new ArrayList<>();
+        for (int i = 0; i < Shapes.NAMES.length; i++) {
+            String name = "city_" + Shapes.NAMES[i];
+            int shape = i;
+            tests.add(DynamicTest.dynamicTest(name, () -> check(name, () -> generateCity(shape, 1))));
+            tests.add(DynamicTest.dynamicTest(name + " with " + THREADS + " threads",
+                    () -> check(name, () -> generateCity(shape, THREADS))));
+        }
+        for (int i = 0; i < COLOURS.length; i++) {
+            String name = "quarter_" + COLOURS[i];
+            int colour = i;
+            tests.add(DynamicTest.dynamicTest(name, () -> check(name, () -> fillQuarter(colour))));
+        }
+        return tests;
+    }
+
+    private static void check(String name, Supplier<Result> generate) throws URISyntaxException {
+        JSONDeserializer deserializer = new JSONDeserializer();
+        Result golden = new Result(deserializer.deserializeEdges(getGolden(name, "graph_edges.json")),
+                deserializer.deserializeBuildingsList(getGolden(name, "buildings.json")));
+        Result actual = generate.get();
+
+        List<String> differences = new ArrayList<>();
+        compareEdges(golden.edges(), actual.edges(), differences);
+        compareBuildings(golden.buildings(), actual.buildings(), differences);
+        assertTrue(differences.isEmpty(), () -> {
+            StringBuilder report = new StringBuilder(name + " differs from its golden output in " + differences.size() + " places");
+            for (String difference : differences.subList(0, Math.min(differences.size(), MAX_REPORTED))) {
+                report.append("\n  ").append(difference);
+            }
+            if (differences.size() > MAX_REPORTED) {
+                report.append("\n  ... ").append(differences.size() - MAX_REPORTED).append(" more");
+            }
+            return report.toString();
+        });
+    }
+
+    private static String getGolden(String name, String file) throws URISyntaxException {
+        URL url = GoldenOutputTest.class.getResource("/golden/" + name + "/" + file);
+        assertNotNull(url, "no golden " + name + "/" + file);
+        return Paths.get(url.toURI()).toString();
+    }
+
+    private static Map<String, Double> getColoring() {
+        Map<String, Double> coloring = new LinkedHashMap<>();
+        coloring.put("park", 0.1);
+        coloring.put("market", 0.05);
+        coloring.put("square", 0.05);
+        coloring.put("industrial", 0.2);
+        coloring.put("poor", 0.2);
+        coloring.put("middle", 0.2);
+        coloring.put("rich", 0.2);
+        return coloring;
+    }
+
+    private static Result generateCity(int shape, int threads) {
+        ExecutorService executor = threads > 1 ? new ForkJoinPool(threads) : null;
+        try {
+            City city = new City(new Randomizer(SEED + shape), executor);
+            city.generateCity(0, 0, CITY_SIDE_LENGTH, Shapes.getMultipliers(Shapes.NAMES[shape]), getColoring());
+            return new Result(city.getEdges(), city.getBuildings());
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static Result fillQuarter(int colour) {
+        Quarter quarter = new Quarter(getQuarterBorders(), COLOURS[colour]);
+        quarter.setRandomizer(new Randomizer(SEED + colour));
+        return new Result(List.of(), List.of(quarter.fill()));
+    }
+
+    // an irregular convex hexagon, counterclockwise
+    private static List<Segment> getQuarterBorders() {
+        double[][] corners = {{0, 0}, {160, -10}, {230, 90}, {190, 210}, {60, 230}, {-20, 120}};
+        List<Segment> borders = new ArrayList<>();
+        for (int i = 0; i < corners.length; i++) {
+            double[] start = corners[i];
+            double[] end = corners[(i + 1) % corners.length];
+            borders.add(new Segment(start[0], start[1], end[0], end[1]));
+        }
+        return borders;
+    }
+
+    private static void compareEdges(List<Segment> expected, List<Segment> actual, List<String> differences) {
+        if (expected.size() != actual.size()) {
+            differences.add("edges: " + actual.size() + " instead of " + expected.size());
+        }
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            Segment e = expected.get(i);
+            Segment a = actual.get(i);
+            double distance = Math.max(
+                    Math.max(difference(e.getX1(), a.getX1()), difference(e.getY1(), a.getY1())),
+                    Math.max(difference(e.getX2(), a.getX2()), difference(e.getY2(), a.getY2())));
+            if (distance > TOLERANCE) {
+                differences.add("edge " + i + ": moved by " + distance);
+            }
+        }
+    }
+
+    private static void compareBuildings(List<List<Building>> expected, List<List<Building>> actual, List<String> differences) {
+        if (expected.size() != actual.size()) {
+            differences.add("quarters: " + actual.size() + " instead of " + expected.size());
+        }
+        for (int q = 0; q < Math.min(expected.size(), actual.size()); q++) {
+            List<Building> expectedBuildings = expected.get(q);
+            List<Building> actualBuildings = actual.get(q);
+            if (expectedBuildings.size() != actualBuildings.size()) {
+                differences.add("quarter " + q + ": " + actualBuildings.size() + " buildings instead of " + expectedBuildings.size());
+            }
+            for (int b = 0; b < Math.min(expectedBuildings.size(), actualBuildings.size()); b++) {
+                String difference = compareBuilding(expectedBuildings.get(b), actualBuildings.get(b));
+                if (difference != null) {
+                    differences.add("quarter " + q + " building " + b + ": " + difference);
+                }
+            }
+        }
+    }
+
+    // null when the buildings match
+    private static String compareBuilding(Building expected, Building actual) {
+        if (!expected.color().equals(actual.color())) {
+            return "colour " + actual.color() + " instead of " + expected.color();
+        }
+        if (expected.vertexes().size() != actual.vertexes().size()) {
+            return actual.vertexes().size() + " vertices instead of " + expected.vertexes().size();
+        }
+        double maxDistance = 0;
+        int worst = -1;
+        for (int i = 0; i < expected.vertexes().size(); i++) {
+            Point e = expected.vertexes().get(i);
+            Point a = actual.vertexes().get(i);
+            double distance = Math.max(difference(e.x, a.x), difference(e.y, a.y));
+            if (distance > maxDistance) {
+                maxDistance = distance;
+                worst = i;
+            }
+        }
+        return maxDistance > TOLERANCE ? "vertex " + worst + " moved by " + maxDistance : null;
+    }
+
+    // a NaN on only one side counts as infinitely far
+    private static double difference(double expected, double actual) {
+        if (Double.compare(expected, actual) == 0) {
+            return 0;
+        }
+        double difference = Math.abs(expected - actual);
+        return Double.isNaN(difference) ? Double.POSITIVE_INFINITY : difference;
+    }
+
+    // records the goldens into args[0], by default src/test/resources/golden/
+    public static void main(String[] args) throws IOException {
+        String path = args.length > 0 ? args[0] : "src/test/resources/golden/";
+        JSONSerializer serializer = new JSONSerializer(false);
+        Map<String, Result> results = new LinkedHashMap<>();
+        for (int i = 0; i < Shapes.NAMES.length; i++) {
+            results.put("city_" + Shapes.NAMES[i], generateCity(i, 1));
+        }
+        for (int i = 0; i < COLOURS.length; i++) {
+            results.put("quarter_" + COLOURS[i], fillQuarter(i));
+        }
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            String casePath = path + entry.getKey() + "/";
+            new File(casePath).mkdirs();
+            try (JsonWriter writer = serializer.createWriter(new FileWriter(casePath + "graph_edges.json", StandardCharsets.UTF_8))) {
+                writer.beginArray();
+                for (Segment edge : entry.getValue().edges()) {
+                    JSONCodec.writeSegment(writer, edge);
+                }
+                writer.endArray();
+            }
+            serializer.serializeBuildingsList(entry.getValue().buildings(), casePath);
+            System.out.println("RECORDED: " + entry.getKey());
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package tiles;
+
+import city.City;
+import city.Shapes;
+import geometry.Randomizer;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class TilePyramidTest {
+
+    private static final Map<String, Double> COLORING = Map.of("park", 0.1, "market", 0.05, "square", 0.05,
+            "industrial", 0.2, "poor", 0.2, "middle", 0.2, "rich", 0.2);
+
+    // a city restored from a cache has no road network, so its quarters are drawn as the hull of their buildings
+    @Test
+    void restoredCityDrawsQuarterFootprints() {
+        City city = new City(new Randomizer(3), null);
+        city.generateCity(0, 0, 1500, Shapes.getMultipliers("square"), COLORING);
+        City restored = new City(city.getBuildings(), city.getEdges());
+
+        byte[] generatedTile = new TilePyramid(city, 3).getTile(0, 0, 0);
+        byte[] restoredTile = new TilePyramid(restored, 3).getTile(0, 0, 0);
+
+        assertNotNull(restoredTile);
+        Set<String> colours = readColours(restoredTile);
+        assertFalse(colours.isEmpty());
+        assertEquals(readColours(generatedTile), colours);
+    }
+
+    // the colour table at the start of a tile, see TileEncoder
+    private static Set<String> readColours(byte[] tile) {
+        int[] position = {0};
+        assertEquals(TileEncoder.VERSION, readVarint(tile, position));
+        int count = readVarint(tile, position);
+        Set<String> colours = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            int length = readVarint(tile, position);
+            colours.add(new String(tile, position[0], length, StandardCharsets.UTF_8));
+            position[0] += length;
+        }
+        return colours;
+    }
+
+    private static int readVarint(byte[] bytes, int[] position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = bytes[position[0]++];
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}